@@ -0,0 +1,14 @@
+package com.nthalk.stacks;
+
+/**
+ * A player that answers later instead of holding up the calling thread while it thinks.
+ * <p>
+ * The game is not modified until the reply is done, or cancelled because it is no longer wanted.
+ */
+public interface AsyncPlayer {
+
+    Reply<Game.ValidMove> move(Game.Color color, Game game);
+
+    Reply<Game.ValidPosition> place(Game.Color color, Game game);
+
+}
@@ -4,20 +4,65 @@ import java.util.*;
 
 public class Board {
 
-    private static final char[] COLUMNS = "ABCDEFGHIJK".toCharArray();
+    private static final char[] COLUMNS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
     private final Set<Position> positions = new HashSet<>();
+    private final List<Position> indexedPositions = new ArrayList<>();
+    private final Map<String, Position> positionsByName = new HashMap<>();
+    private final List<Set<Position>> adjacentPositions = new ArrayList<>();
+    private final List<BoardMask> adjacentMasks = new ArrayList<>();
+    private final BoardMask mask;
     Row[] rows = new Row[0];
 
     public Board() {
-        makeRow(2, 10);
-        makeRow(1, 10);
-        makeRow(0, 10);
-        makeRow(0, 9);
-        makeRow(0, 8);
+        this(new int[][]{{2, 10}, {1, 10}, {0, 10}, {0, 9}, {0, 8}});
+    }
+
+    /**
+     * @param rowColumns the start (inclusive) and end (exclusive) column of each row, from the first row up
+     */
+    public Board(int[][] rowColumns) {
+        for (int[] columns : rowColumns) {
+            makeRow(columns[0], columns[1]);
+        }
+        if (indexedPositions.size() > BoardMask.CAPACITY) {
+            throw new IllegalArgumentException("A board can have at most " + BoardMask.CAPACITY + " positions, not " + indexedPositions.size());
+        }
 
         for (Row row : rows) {
             Collections.addAll(positions, row.getPositions());
         }
+        for (Position position : indexedPositions) {
+            positionsByName.put(position.toString(), position);
+            Set<Position> adjacent = findAdjacentPositions(position);
+            BoardMask adjacentMask = BoardMask.EMPTY;
+            for (Position adjacentPosition : adjacent) {
+                adjacentMask = adjacentMask.with(adjacentPosition.getIndex());
+            }
+            adjacentPositions.add(Collections.unmodifiableSet(adjacent));
+            adjacentMasks.add(adjacentMask);
+        }
+        mask = BoardMask.range(indexedPositions.size());
+    }
+
+    /**
+     * A hexagon stretched like the default board, the middle row being the longest and the rows above and below
+     * each one position shorter than the last.
+     *
+     * @param rowCount   an odd number of rows
+     * @param longestRow the number of positions in the middle row
+     */
+    public static Board hexagon(int rowCount, int longestRow) {
+        if (rowCount % 2 == 0 || longestRow <= rowCount / 2) {
+            throw new IllegalArgumentException("Cannot make a hexagon of " + rowCount + " rows with a longest row of " + longestRow);
+        }
+        int middle = rowCount / 2;
+        int[][] rowColumns = new int[rowCount][];
+        for (int row = 0; row < rowCount; row++) {
+            int shorter = Math.abs(row - middle);
+            int startColumn = row < middle ? shorter : 0;
+            rowColumns[row] = new int[]{startColumn, startColumn + longestRow - shorter};
+        }
+        return new Board(rowColumns);
     }
 
     private void makeRow(int startColumn, int endColumn) {
@@ -34,7 +79,36 @@ public class Board {
         return rows;
     }
 
+    /**
+     * Positions are indexed row by row, starting from the first column of the first row.
+     */
+    public Position getPosition(int index) {
+        return indexedPositions.get(index);
+    }
+
+    /**
+     * @return the position named like "F3", or null if there is no such position on this board
+     */
+    public Position getPosition(String name) {
+        return positionsByName.get(name);
+    }
+
+    /**
+     * @return every position, as a mask of their indexes
+     */
+    public BoardMask getMask() {
+        return mask;
+    }
+
     public Set<Position> adjacentPositions(Position position) {
+        return adjacentPositions.get(position.getIndex());
+    }
+
+    public BoardMask adjacentMask(int index) {
+        return adjacentMasks.get(index);
+    }
+
+    private Set<Position> findAdjacentPositions(Position position) {
         Row row = position.getRow();
         Set<Position> adjacent = new HashSet<>();
         Position left = row.getPosition(position.getColumn() - 1);
@@ -76,15 +150,37 @@ public class Board {
     public static class Position {
         private final Row row;
         private final int column;
+        private final int index;
+        private final String name;
 
-        private Position(Row row, int column) {
+        private Position(Row row, int column, int index) {
             this.row = row;
             this.column = column;
+            this.index = index;
+            this.name = columnName(column) + (row.getNumber() + 1);
+        }
+
+        private static String columnName(int column) {
+            String name = "";
+            do {
+                name = COLUMNS[column % COLUMNS.length] + name;
+                column = column / COLUMNS.length - 1;
+            } while (column >= 0);
+            return name;
         }
 
         @Override
         public String toString() {
-            return "" + COLUMNS[column] + (row.getNumber() + 1);
+            return name;
+        }
+
+        /**
+         * Every position of a board is a single instance, so equality stays identity, but hashing by index keeps the
+         * iteration order of sets of positions the same from one run to the next.
+         */
+        @Override
+        public int hashCode() {
+            return index;
         }
 
         public Row getRow() {
@@ -94,12 +190,21 @@ public class Board {
         public int getColumn() {
             return column;
         }
+
+        public int getIndex() {
+            return index;
+        }
     }
 
     public static class Stack {
 
+        private static final Stack[][] CANONICAL = new Stack[Game.Color.values().length * 2][BoardMask.CAPACITY + 1];
+
         private final List<Game.Color> colors;
 
+        private Stack(List<Game.Color> colors) {
+            this.colors = colors;
+        }
 
         public Stack(Stack place, Stack upon) {
             List<Game.Color> colors = new ArrayList<>();
@@ -112,6 +217,28 @@ public class Board {
             this.colors = Collections.singletonList(currentColor);
         }
 
+        /**
+         * A stack with the given owner and size, its red piece if any at the bottom. Only the owner, the size and
+         * whether there is red matter to the game, so these stacks are shared and asking for one again does not
+         * allocate.
+         */
+        public static Stack of(Game.Color owner, int size, boolean hasRed) {
+            if (size < 1 || size > BoardMask.CAPACITY || (owner == Game.Color.RED && !hasRed)) {
+                throw new IllegalArgumentException("There is no " + owner + " stack of " + size + (hasRed ? " with red" : ""));
+            }
+            int kind = owner.ordinal() * 2 + (hasRed ? 1 : 0);
+            Stack stack = CANONICAL[kind][size];
+            if (stack == null) {
+                List<Game.Color> colors = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    colors.add(i == 0 && hasRed ? Game.Color.RED : owner);
+                }
+                stack = new Stack(Collections.unmodifiableList(colors));
+                CANONICAL[kind][size] = stack;
+            }
+            return stack;
+        }
+
         public Game.Color getOwner() {
             return colors.get(colors.size() - 1);
         }
@@ -142,7 +269,8 @@ public class Board {
             this.startColumn = startColumn;
             this.positions = new Position[endColumn - startColumn];
             for (int i = 0; i < positions.length; i++) {
-                this.positions[i] = new Position(this, i + startColumn);
+                this.positions[i] = new Position(this, i + startColumn, indexedPositions.size());
+                indexedPositions.add(this.positions[i]);
             }
         }
 
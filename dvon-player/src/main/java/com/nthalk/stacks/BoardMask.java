@@ -0,0 +1,112 @@
+package com.nthalk.stacks;
+
+/**
+ * An immutable set of position indexes held in two 64 bit words, boards of up to 64 positions only ever use the
+ * first word.
+ */
+public final class BoardMask {
+
+    public static final int CAPACITY = 128;
+    public static final BoardMask EMPTY = new BoardMask(0, 0);
+
+    private final long low;
+    private final long high;
+
+    private BoardMask(long low, long high) {
+        this.low = low;
+        this.high = high;
+    }
+
+    public static BoardMask of(long low, long high) {
+        return low == 0 && high == 0 ? EMPTY : new BoardMask(low, high);
+    }
+
+    /**
+     * @return a mask of the indexes from 0 up to, but not including, size
+     */
+    public static BoardMask range(int size) {
+        if (size <= 64) {
+            return of(size == 64 ? -1L : (1L << size) - 1, 0);
+        }
+        return of(-1L, size == CAPACITY ? -1L : (1L << (size - 64)) - 1);
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public boolean contains(int index) {
+        return index < 64 ? (low & (1L << index)) != 0 : (high & (1L << (index - 64))) != 0;
+    }
+
+    public BoardMask with(int index) {
+        return index < 64 ? of(low | (1L << index), high) : of(low, high | (1L << (index - 64)));
+    }
+
+    public BoardMask without(int index) {
+        return index < 64 ? of(low & ~(1L << index), high) : of(low, high & ~(1L << (index - 64)));
+    }
+
+    public BoardMask or(BoardMask mask) {
+        return of(low | mask.low, high | mask.high);
+    }
+
+    public BoardMask and(BoardMask mask) {
+        return of(low & mask.low, high & mask.high);
+    }
+
+    public BoardMask andNot(BoardMask mask) {
+        return of(low & ~mask.low, high & ~mask.high);
+    }
+
+    public boolean isEmpty() {
+        return low == 0 && high == 0;
+    }
+
+    public int count() {
+        return Long.bitCount(low) + Long.bitCount(high);
+    }
+
+    /**
+     * @return the first index at or after from that is in the mask, or -1 if there is none
+     */
+    public int nextIndex(int from) {
+        if (from < 64) {
+            long bits = low & (-1L << from);
+            if (bits != 0) {
+                return Long.numberOfTrailingZeros(bits);
+            }
+            from = 64;
+        }
+        if (from < CAPACITY) {
+            long bits = high & (-1L << (from - 64));
+            if (bits != 0) {
+                return 64 + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BoardMask)) return false;
+        BoardMask mask = (BoardMask) o;
+        return low == mask.low && high == mask.high;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = low * 31 + high;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -3,28 +3,60 @@ package com.nthalk.stacks;
 import com.nthalk.fn.Option;
 import com.nthalk.stacks.exceptions.InvalidMoveException;
 import com.nthalk.stacks.exceptions.InvalidPlacementException;
-import com.nthalk.stacks.players.RandomPlayer;
+import com.nthalk.stacks.metrics.Metrics;
+import com.nthalk.stacks.players.TimedPlayer;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class Game {
 
     private static final Logger LOG = Logger.getLogger(Game.class);
+    // Row and column steps of the six directions a stack moves in, those of Board#adjacentPositions
+    private static final int[][] DIRECTIONS = {{0, -1}, {0, 1}, {-1, 0}, {-1, 1}, {1, 0}, {1, -1}};
 
+    private final Rules rules;
     private final Board board;
     private Phase phase;
     private Color currentColor;
     private Map<Color, Player> playersByColor = new IdentityHashMap<>();
     private Map<Board.Position, Board.Stack> stacksByPosition = new IdentityHashMap<>();
+    private BoardMask occupied = BoardMask.EMPTY;
+    private BoardMask reds = BoardMask.EMPTY;
+    private Listener listener;
 
     public Game() {
-        board = new Board();
+        this(Rules.DEFAULT);
+    }
+
+    public Game(Rules rules) {
+        this.rules = rules;
+        board = rules.getBoard();
         phase = Phase.PLACEMENT;
-        currentColor = Color.WHITE;
+        currentColor = rules.getFirstColor();
+    }
+
+    /**
+     * Copies the state of another game, sharing its board and its immutable stacks.
+     */
+    public Game(Game game) {
+        rules = game.rules;
+        board = game.board;
+        phase = game.phase;
+        currentColor = game.currentColor;
+        playersByColor.putAll(game.playersByColor);
+        stacksByPosition.putAll(game.stacksByPosition);
+        occupied = game.occupied;
+        reds = game.reds;
+    }
+
+    public Rules getRules() {
+        return rules;
     }
 
     public Board getBoard() {
@@ -52,22 +84,40 @@ public class Game {
             throw new InvalidMoveException("Cannot move to an empty space");
         }
 
+        if (isSurrounded(from)) {
+            throw new InvalidMoveException("Cannot move a stack surrounded on every side");
+        }
+
         int stackSize = stackMoved.get().getSize();
         int fromRow = from.getRow().getNumber();
         int fromColumn = from.getColumn();
         int toRow = to.getRow().getNumber();
         int toColumn = to.getColumn();
 
-        int rowDelta = Math.abs(fromRow - toRow);
-        int columnDelta = Math.abs(fromColumn - toColumn);
+        int rowDelta = toRow - fromRow;
+        int columnDelta = toColumn - fromColumn;
 
-        if ((rowDelta == 0 && columnDelta == stackSize) ||
-            (columnDelta == 0 && rowDelta == stackSize) ||
-            (columnDelta == rowDelta && columnDelta == stackSize)) {
+        // Along one of the directions of Board#adjacentPositions, a row up goes a column left
+        if ((rowDelta == 0 && Math.abs(columnDelta) == stackSize) ||
+            (columnDelta == 0 && Math.abs(rowDelta) == stackSize) ||
+            (rowDelta == -columnDelta && Math.abs(rowDelta) == stackSize)) {
             return new ValidMove(move);
         }
 
-        throw new InvalidMoveException("Cannot move a stack of size " + stackSize + " from (" + fromColumn + "," + fromRow + ") to (" + fromColumn + "," + fromRow + ")");
+        throw new InvalidMoveException("Cannot move a stack of size " + stackSize + " from (" + fromColumn + "," + fromRow + ") to (" + toColumn + "," + toRow + ")");
+    }
+
+    private boolean isSurrounded(Board.Position position) {
+        Set<Board.Position> adjacentPositions = getBoard().adjacentPositions(position);
+        if (adjacentPositions.size() < 6) {
+            return false;
+        }
+        for (Board.Position adjacentPosition : adjacentPositions) {
+            if (getStack(adjacentPosition).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public ValidPosition validate(Board.Position position) throws InvalidPlacementException {
@@ -83,73 +133,60 @@ public class Game {
 
     }
 
+    /**
+     * Parses and validates a ply written as "F3" for a placement or "F3-G4" for a move.
+     */
+    public Ply validate(String ply) throws InvalidPlacementException, InvalidMoveException {
+        int dash = ply.indexOf('-');
+        if (dash < 0) {
+            Board.Position position = board.getPosition(ply);
+            if (position == null) {
+                throw new InvalidPlacementException("There is no position " + ply);
+            }
+            return new Ply(validate(position));
+        }
+        Board.Position from = board.getPosition(ply.substring(0, dash));
+        Board.Position to = board.getPosition(ply.substring(dash + 1));
+        if (from == null || to == null) {
+            throw new InvalidMoveException("There is no move " + ply);
+        }
+        return new Ply(validate(new Move(from, to)));
+    }
+
     public Set<ValidMove> getValidMoves(Board.Position from) {
+        long start = Metrics.start();
+        Set<ValidMove> validMoves = generateValidMoves(from);
+        if (Metrics.ENABLED) {
+            Metrics.MOVES_GENERATED.add(validMoves.size());
+            Metrics.VALID_MOVES.stop(start);
+        }
+        return validMoves;
+    }
+
+    private Set<ValidMove> generateValidMoves(Board.Position from) {
         Set<ValidMove> validMoves = new HashSet<>();
         Option<Board.Stack> stackOption = getStack(from);
         if (stackOption.isEmpty()) {
             return validMoves;
         }
 
-        Set<Board.Position> adjacentPositions = getBoard().adjacentPositions(from);
-        if (adjacentPositions.size() == 6) {
-            boolean holeFound = false;
-            for (Board.Position position : adjacentPositions) {
-                if (!getStack(position).isEmpty()) {
-                    holeFound = true;
-                }
-            }
-            if (!holeFound) {
-                return validMoves;
-            }
+        if (isSurrounded(from)) {
+            return validMoves;
         }
 
         int stackSize = stackOption.get().getSize();
-
-
         Board.Row[] rows = board.getRows();
         int fromRow = from.getRow().getNumber();
         int fromColumn = from.getColumn();
 
-
-        // Row, Column
-        Board.Row row = from.getRow();
-        Board.Position positionLeft = row.getPosition(fromColumn - stackSize);
-        if (positionLeft != null && !getStack(positionLeft).isEmpty()) {
-            // 0, -stack
-            validMoves.add(new ValidMove(new Move(from, positionLeft)));
-        }
-
-        Board.Position positionRight = row.getPosition(fromColumn + stackSize);
-        if (positionRight != null && !getStack(positionRight).isEmpty()) {
-            // 0, +stack
-            validMoves.add(new ValidMove(new Move(from, positionRight)));
-        }
-
-        if (fromRow > stackSize) {
-            Board.Row rowDown = rows[fromRow - stackSize];
-            Board.Position positionDown = rowDown.getPosition(fromColumn - stackSize);
-            if (positionDown != null && !getStack(positionDown).isEmpty()) {
-                // -stack, stack
-                validMoves.add(new ValidMove(new Move(from, positionDown)));
-            }
-            positionDown = rowDown.getPosition(fromColumn + stackSize);
-            if (positionDown != null && !getStack(positionDown).isEmpty()) {
-                // -stack, -stack
-                validMoves.add(new ValidMove(new Move(from, positionDown)));
-            }
-        }
-
-        if (fromRow + stackSize < rows.length - 1) {
-            Board.Row rowUp = rows[fromRow + stackSize];
-            Board.Position positionUp = rowUp.getPosition(fromColumn - stackSize);
-            if (positionUp != null && !getStack(positionUp).isEmpty()) {
-                // stack, stack
-                validMoves.add(new ValidMove(new Move(from, positionUp)));
+        for (int[] direction : DIRECTIONS) {
+            int toRow = fromRow + direction[0] * stackSize;
+            if (toRow < 0 || toRow >= rows.length) {
+                continue;
             }
-            positionUp = rowUp.getPosition(fromColumn + stackSize);
-            if (positionUp != null && !getStack(positionUp).isEmpty()) {
-                // stack, -stack
-                validMoves.add(new ValidMove(new Move(from, positionUp)));
+            Board.Position to = rows[toRow].getPosition(fromColumn + direction[1] * stackSize);
+            if (to != null && !getStack(to).isEmpty()) {
+                validMoves.add(new ValidMove(new Move(from, to)));
             }
         }
 
@@ -165,17 +202,80 @@ public class Game {
         return validMoves;
     }
 
+    /**
+     * @return every play available to the current color, this should be called after {@link #findValidPlay()}
+     */
+    public List<Ply> getValidPlies() {
+        List<Ply> plies = new ArrayList<>();
+        if (phase == Phase.PLACEMENT) {
+            for (Board.Position position : getEmptyPositions()) {
+                plies.add(new Ply(new ValidPosition(position)));
+            }
+        } else if (phase == Phase.PLAY) {
+            for (Board.Position position : getColorPositions(currentColor)) {
+                for (ValidMove validMove : getValidMoves(position)) {
+                    plies.add(new Ply(validMove));
+                }
+            }
+        }
+        return plies;
+    }
+
     public Option<Board.Stack> getStack(Board.Position position) {
         return Option.of(stacksByPosition.get(position));
     }
 
-    public void setPlayer(Color white, RandomPlayer player) {
-        playersByColor.put(white, player);
+    /**
+     * @return the stack at the position or null, for when wrapping it in an option costs too much
+     */
+    Board.Stack stackAt(Board.Position position) {
+        return stacksByPosition.get(position);
+    }
+
+    /**
+     * Sets who is told of every ply submitted to this game, copies of the game do not inherit it.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setPlayer(Color white, Player player) {
+        playersByColor.put(white, TimedPlayer.of(player));
+    }
+
+    /**
+     * Plays the game to the end with the players that have been set.
+     *
+     * @return every ply played, in order
+     */
+    public List<Ply> play() {
+        long gameStart = Metrics.start();
+        List<Ply> plies = new ArrayList<>();
+        while (findValidPlay()) {
+            Player currentPlayer = getCurrentPlayer();
+            Ply ply;
+            if (phase == Phase.PLACEMENT) {
+                ply = new Ply(currentPlayer.place(currentColor, this));
+            } else {
+                ply = new Ply(currentPlayer.move(currentColor, this));
+            }
+            plies.add(ply);
+            submit(ply);
+        }
+        Metrics.GAME.stop(gameStart);
+        return plies;
     }
 
     public boolean findValidPlay() {
+        long start = Metrics.start();
+        boolean validPlay = nextValidPlay();
+        Metrics.FIND_VALID_PLAY.stop(start);
+        return validPlay;
+    }
+
+    private boolean nextValidPlay() {
         if (phase == Phase.PLACEMENT) {
-            if (getEmptyPositions().size() == 0) {
+            if (occupied.equals(board.getMask())) {
                 phase = Phase.PLAY;
             } else {
                 return true;
@@ -198,8 +298,8 @@ public class Game {
             }
         }
 
-        if (phase != Phase.FINISHED) {
-            LOG.info("Game finished: WHITE: " + getScore(Color.WHITE) + ", BLACK: " + getScore(Color.BLACK) + " WINNER: " + getWinner());
+        if (phase != Phase.FINISHED && LOG.isDebugEnabled()) {
+            LOG.debug("Game finished: WHITE: " + getScore(Color.WHITE) + ", BLACK: " + getScore(Color.BLACK) + " WINNER: " + getWinner());
         }
 
         phase = Phase.FINISHED;
@@ -209,12 +309,27 @@ public class Game {
 
     public Set<Board.Position> getEmptyPositions() {
         Set<Board.Position> emptyPositions = new HashSet<>();
-        for (Board.Position position : board.getPositions()) {
-            if (getStack(position).isEmpty()) emptyPositions.add(position);
+        BoardMask empty = board.getMask().andNot(occupied);
+        for (int index = empty.nextIndex(0); index >= 0; index = empty.nextIndex(index + 1)) {
+            emptyPositions.add(board.getPosition(index));
         }
         return emptyPositions;
     }
 
+    /**
+     * @return the positions that have a stack, as a mask of their indexes
+     */
+    public BoardMask getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * @return the positions whose stack holds a red piece, as a mask of their indexes
+     */
+    public BoardMask getReds() {
+        return reds;
+    }
+
     public int getScore(Color color) {
         int score = 0;
         for (Board.Position position : getColorPositions(color)) {
@@ -243,6 +358,37 @@ public class Game {
         return null;
     }
 
+    /**
+     * Replaces the whole state of the game, as decoded by {@link GameCodec}.
+     *
+     * @param stacks the stack of each position by index, null where the position is empty
+     */
+    void restore(Phase phase, Color currentColor, Board.Stack[] stacks) {
+        this.phase = phase;
+        this.currentColor = currentColor;
+        stacksByPosition.clear();
+        long occupiedLow = 0;
+        long occupiedHigh = 0;
+        long redsLow = 0;
+        long redsHigh = 0;
+        for (int index = 0; index < stacks.length; index++) {
+            Board.Stack stack = stacks[index];
+            if (stack == null) {
+                continue;
+            }
+            stacksByPosition.put(board.getPosition(index), stack);
+            if (index < 64) {
+                occupiedLow |= 1L << index;
+                redsLow |= stack.getHasRed() ? 1L << index : 0;
+            } else {
+                occupiedHigh |= 1L << (index - 64);
+                redsHigh |= stack.getHasRed() ? 1L << (index - 64) : 0;
+            }
+        }
+        occupied = BoardMask.of(occupiedLow, occupiedHigh);
+        reds = BoardMask.of(redsLow, redsHigh);
+    }
+
     private void nextPlayer() {
         if (currentColor == Color.BLACK) {
             currentColor = Color.WHITE;
@@ -264,70 +410,96 @@ public class Game {
     }
 
     public void submit(ValidPosition place) {
-
-        if (getPositionsWithReds().size() <= 2) {
-            LOG.info("Placement: " + currentColor.name() + " has placed RED at " + place.getPosition().toString());
+        long start = Metrics.start();
+        int index = place.getPosition().getIndex();
+        occupied = occupied.with(index);
+        if (reds.count() < rules.getRedStacks()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Placement: " + currentColor.name() + " has placed RED at " + place.getPosition().toString());
+            }
             stacksByPosition.put(place.getPosition(), new Board.Stack(Color.RED));
+            reds = reds.with(index);
         } else {
-            LOG.info("Placement: " + currentColor.name() + " has placed at " + place.getPosition().toString());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Placement: " + currentColor.name() + " has placed at " + place.getPosition().toString());
+            }
             stacksByPosition.put(place.getPosition(), new Board.Stack(currentColor));
         }
 
         nextPlayer();
-    }
-
-    private Set<Board.Position> getPositionsWithReds() {
-        Set<Board.Position> redPositions = new HashSet<>();
-        for (Board.Position position : board.getPositions()) {
-            for (Board.Stack stack : getStack(position)) {
-                if (stack.getHasRed()) {
-                    redPositions.add(position);
-                }
-            }
+        Metrics.SUBMIT.stop(start);
+        if (listener != null) {
+            listener.onSubmit(this, new Ply(place));
         }
-        return redPositions;
     }
 
-    private Set<Board.Position> connectedPositions(Board.Position position, Set<Board.Position> connectedPositions) {
-        if (connectedPositions.contains(position)) {
-            return connectedPositions;
+    public void submit(Ply ply) {
+        if (ply.isPlacement()) {
+            submit(ply.getPlacement());
         } else {
-            connectedPositions.add(position);
-            for (Board.Position adjancent : getBoard().adjacentPositions(position)) {
-                if (!getStack(adjancent).isEmpty()) {
-                    LOG.info("Position " + adjancent + " is connected to: " + position);
-                    connectedPositions(adjancent, connectedPositions);
-                }
-            }
-            return connectedPositions;
+            submit(ply.getMove());
         }
     }
 
     public void submit(ValidMove move) {
-        LOG.info("Move: " + currentColor.name() + " from " + move.getFrom().toString() + " to " + move.getTo().toString());
+        long start = Metrics.start();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Move: " + currentColor.name() + " from " + move.getFrom().toString() + " to " + move.getTo().toString());
+        }
         Board.Stack upon = getStack(move.getTo()).get();
         Board.Stack place = getStack(move.getFrom()).get();
         stacksByPosition.remove(move.getFrom());
         stacksByPosition.put(move.getTo(), new Board.Stack(place, upon));
+        int from = move.getFrom().getIndex();
+        occupied = occupied.without(from);
+        if (reds.contains(from)) {
+            reds = reds.without(from).with(move.getTo().getIndex());
+        }
 
-        Set<Board.Position> connectedPositions = new HashSet<>();
-
-        for (Board.Position position : getPositionsWithReds()) {
-            LOG.info("Red Position: " + position);
-            connectedPositions(position, connectedPositions);
+        long sweepStart = Metrics.start();
+        BoardMask connected = reds;
+        BoardMask frontier = reds;
+        while (!frontier.isEmpty()) {
+            BoardMask adjacent = BoardMask.EMPTY;
+            for (int index = frontier.nextIndex(0); index >= 0; index = frontier.nextIndex(index + 1)) {
+                adjacent = adjacent.or(board.adjacentMask(index));
+            }
+            frontier = adjacent.and(occupied).andNot(connected);
+            connected = connected.or(frontier);
         }
 
-        for (Board.Position position : getBoard().getPositions()) {
-            if (!getStack(position).isEmpty() && !connectedPositions.contains(position)) {
-                LOG.info("Clearing: " + position);
-                stacksByPosition.remove(position);
+        BoardMask disconnected = occupied.andNot(connected);
+        for (int index = disconnected.nextIndex(0); index >= 0; index = disconnected.nextIndex(index + 1)) {
+            Board.Position position = board.getPosition(index);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Clearing: " + position);
             }
+            stacksByPosition.remove(position);
+        }
+        occupied = connected;
+        if (Metrics.ENABLED) {
+            Metrics.STACKS_REMOVED.add(disconnected.count());
         }
+        Metrics.CONNECTIVITY_SWEEP.stop(sweepStart);
 
         nextPlayer();
+        if (Metrics.ENABLED) {
+            Metrics.MOVES_APPLIED.increment();
+        }
+        Metrics.SUBMIT.stop(start);
+        if (listener != null) {
+            listener.onSubmit(this, new Ply(move));
+        }
     }
 
 
+    public interface Listener {
+        /**
+         * Called once the ply has been applied to the game.
+         */
+        void onSubmit(Game game, Ply ply);
+    }
+
     public enum Phase {
         PLACEMENT,
         PLAY,
@@ -374,6 +546,58 @@ public class Game {
         public Board.Position getTo() {
             return to;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Move)) {
+                return false;
+            }
+            Move move = (Move) o;
+            return from == move.from && to == move.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return from.hashCode() * BoardMask.CAPACITY + to.hashCode();
+        }
+    }
+
+    /**
+     * Either a placement or a move, written as "F3" or "F3-G4".
+     */
+    public static class Ply {
+        private final ValidPosition placement;
+        private final ValidMove move;
+
+        public Ply(ValidPosition placement) {
+            this.placement = placement;
+            this.move = null;
+        }
+
+        public Ply(ValidMove move) {
+            this.placement = null;
+            this.move = move;
+        }
+
+        public boolean isPlacement() {
+            return placement != null;
+        }
+
+        public ValidPosition getPlacement() {
+            return placement;
+        }
+
+        public ValidMove getMove() {
+            return move;
+        }
+
+        @Override
+        public String toString() {
+            if (isPlacement()) {
+                return placement.getPosition().toString();
+            }
+            return move.getFrom().toString() + "-" + move.getTo().toString();
+        }
     }
 
 }
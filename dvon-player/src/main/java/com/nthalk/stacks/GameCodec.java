@@ -0,0 +1,203 @@
+package com.nthalk.stacks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads the state of a game, either as a compact line of text or as a fixed size binary snapshot.
+ * <p>
+ * The text form lists the positions row by row from the first row, rows separated by "/". An empty position is
+ * ".", a stack is the letter of its owner ("w", "b" or "r"), its size when more than 1, and "*" when a player's stack
+ * holds red. The rows are followed by the color to play and the phase, so the start of a game is
+ * "......../........./........../........./........ w placement".
+ * <p>
+ * The binary form is a version byte, the number of positions, the phase and color to play, and then two bytes per
+ * position in index order: the size, the owner and whether there is red.
+ * <p>
+ * Only the owner, size and red content of a stack matter to the game, so decoded stacks hold their red piece at the
+ * bottom. Neither form allocates anything per position, beyond the decoded game itself.
+ */
+public final class GameCodec {
+
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 3;
+    private static final int OWNER_SHIFT = 8;
+    private static final int RED_BIT = 1 << 10;
+    private static final Game.Color[] COLORS = Game.Color.values();
+    private static final Game.Phase[] PHASES = Game.Phase.values();
+
+    private GameCodec() {
+    }
+
+    public static String toNotation(Game game) {
+        StringBuilder builder = new StringBuilder();
+        appendNotation(game, builder);
+        return builder.toString();
+    }
+
+    public static void appendNotation(Game game, StringBuilder out) {
+        Board.Row[] rows = game.getBoard().getRows();
+        for (int r = 0; r < rows.length; r++) {
+            if (r > 0) {
+                out.append('/');
+            }
+            for (Board.Position position : rows[r].getPositions()) {
+                Board.Stack stack = game.stackAt(position);
+                if (stack == null) {
+                    out.append('.');
+                    continue;
+                }
+                Game.Color owner = stack.getOwner();
+                out.append(owner == Game.Color.WHITE ? 'w' : owner == Game.Color.BLACK ? 'b' : 'r');
+                if (stack.getSize() > 1) {
+                    out.append(stack.getSize());
+                }
+                if (owner != Game.Color.RED && stack.getHasRed()) {
+                    out.append('*');
+                }
+            }
+        }
+        out.append(' ').append(game.getCurrentColor() == Game.Color.WHITE ? 'w' : 'b');
+        out.append(' ').append(phaseName(game.getPhase()));
+    }
+
+    public static Game parseNotation(CharSequence notation, Rules rules) {
+        Board board = rules.getBoard();
+        Board.Stack[] stacks = new Board.Stack[board.getPositions().size()];
+        Board.Row[] rows = board.getRows();
+        int i = 0;
+        for (int r = 0; r < rows.length; r++) {
+            if (r > 0) {
+                i = expect(notation, i, '/');
+            }
+            for (Board.Position position : rows[r].getPositions()) {
+                char c = charAt(notation, i++);
+                if (c == '.') {
+                    continue;
+                }
+                Game.Color owner = parseColor(notation, i - 1, true);
+                int size = 0;
+                while (i < notation.length() && Character.isDigit(notation.charAt(i))) {
+                    size = size * 10 + (notation.charAt(i++) - '0');
+                }
+                boolean hasRed = owner == Game.Color.RED;
+                if (i < notation.length() && notation.charAt(i) == '*') {
+                    hasRed = true;
+                    i++;
+                }
+                stacks[position.getIndex()] = Board.Stack.of(owner, size == 0 ? 1 : size, hasRed);
+            }
+        }
+        i = expect(notation, i, ' ');
+        Game.Color currentColor = parseColor(notation, i++, false);
+        i = expect(notation, i, ' ');
+        Game.Phase phase = null;
+        for (Game.Phase candidate : PHASES) {
+            String name = phaseName(candidate);
+            if (notation.length() - i == name.length() && matches(notation, i, name)) {
+                phase = candidate;
+            }
+        }
+        if (phase == null) {
+            throw new IllegalArgumentException("Expected a phase at " + i + " of " + notation);
+        }
+
+        Game game = new Game(rules);
+        game.restore(phase, currentColor, stacks);
+        return game;
+    }
+
+    /**
+     * @return the number of bytes every binary snapshot of a game with these rules takes
+     */
+    public static int binarySize(Rules rules) {
+        return HEADER_BYTES + 2 * rules.getBoard().getPositions().size();
+    }
+
+    public static void write(Game game, ByteBuffer out) {
+        Board board = game.getBoard();
+        int positions = board.getPositions().size();
+        out.put(VERSION);
+        out.put((byte) positions);
+        out.put((byte) (game.getPhase().ordinal() << 2 | game.getCurrentColor().ordinal()));
+        for (int index = 0; index < positions; index++) {
+            Board.Stack stack = game.stackAt(board.getPosition(index));
+            if (stack == null) {
+                out.putShort((short) 0);
+            } else {
+                int cell = stack.getSize() | stack.getOwner().ordinal() << OWNER_SHIFT | (stack.getHasRed() ? RED_BIT : 0);
+                out.putShort((short) cell);
+            }
+        }
+    }
+
+    public static Game read(ByteBuffer in, Rules rules) {
+        Board board = rules.getBoard();
+        int positions = board.getPositions().size();
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown snapshot version " + version);
+        }
+        int snapshotPositions = in.get() & 0xff;
+        if (snapshotPositions != positions) {
+            throw new IllegalArgumentException("Snapshot of " + snapshotPositions + " positions does not fit a board of " + positions);
+        }
+        int state = in.get();
+        Game.Phase phase = PHASES[state >> 2];
+        Game.Color currentColor = COLORS[state & 3];
+
+        Board.Stack[] stacks = new Board.Stack[positions];
+        for (int index = 0; index < positions; index++) {
+            int cell = in.getShort();
+            int size = cell & 0xff;
+            if (size > 0) {
+                stacks[index] = Board.Stack.of(COLORS[(cell >> OWNER_SHIFT) & 3], size, (cell & RED_BIT) != 0);
+            }
+        }
+
+        Game game = new Game(rules);
+        game.restore(phase, currentColor, stacks);
+        return game;
+    }
+
+    private static String phaseName(Game.Phase phase) {
+        switch (phase) {
+            case PLACEMENT:
+                return "placement";
+            case PLAY:
+                return "play";
+            default:
+                return "finished";
+        }
+    }
+
+    private static Game.Color parseColor(CharSequence notation, int i, boolean redAllowed) {
+        char c = charAt(notation, i);
+        if (c == 'w') return Game.Color.WHITE;
+        if (c == 'b') return Game.Color.BLACK;
+        if (c == 'r' && redAllowed) return Game.Color.RED;
+        throw new IllegalArgumentException("Unexpected '" + c + "' at " + i + " of " + notation);
+    }
+
+    private static int expect(CharSequence notation, int i, char expected) {
+        if (charAt(notation, i) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + i + " of " + notation);
+        }
+        return i + 1;
+    }
+
+    private static char charAt(CharSequence notation, int i) {
+        if (i >= notation.length()) {
+            throw new IllegalArgumentException("Unexpected end of " + notation);
+        }
+        return notation.charAt(i);
+    }
+
+    private static boolean matches(CharSequence notation, int i, String expected) {
+        for (int j = 0; j < expected.length(); j++) {
+            if (notation.charAt(i + j) != expected.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
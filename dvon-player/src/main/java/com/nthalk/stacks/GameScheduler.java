@@ -0,0 +1,132 @@
+package com.nthalk.stacks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays any number of games against {@link AsyncPlayer}s over a few threads. No thread waits on a player: a game is
+ * only picked up by the executor to submit a reply and to ask the next player, so games waiting on their players
+ * cost nothing but memory.
+ * <p>
+ * Each game is only touched by one thread at a time, and never while one of its players is thinking.
+ */
+public class GameScheduler {
+
+    private final Executor executor;
+    private final AtomicInteger running = new AtomicInteger();
+
+    public GameScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return how many games are being played
+     */
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * Plays the game to the end. Cancelling the returned reply cancels the reply the game is waiting on, and a player
+     * failing or cancelling its reply ends the game the same way.
+     *
+     * @return every ply played, in order
+     */
+    public Reply<List<Game.Ply>> play(Game game, AsyncPlayer white, AsyncPlayer black) {
+        final Run run = new Run(game, white, black);
+        running.incrementAndGet();
+        run.result.onDone(new Runnable() {
+            @Override
+            public void run() {
+                running.decrementAndGet();
+                Reply<?> waiting = run.waiting;
+                if (run.result.isCancelled() && waiting != null) {
+                    waiting.cancel(true);
+                }
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                run.next();
+            }
+        });
+        return run.result;
+    }
+
+    private class Run {
+        private final Reply<List<Game.Ply>> result = new Reply<>();
+        private final List<Game.Ply> plies = new ArrayList<>();
+        private final Game game;
+        private final AsyncPlayer white;
+        private final AsyncPlayer black;
+        private volatile Reply<?> waiting;
+
+        private Run(Game game, AsyncPlayer white, AsyncPlayer black) {
+            this.game = game;
+            this.white = white;
+            this.black = black;
+        }
+
+        /**
+         * Asks the player to play for the next ply, or finishes the game.
+         */
+        private void next() {
+            try {
+                if (result.isDone()) {
+                    return;
+                }
+                if (!game.findValidPlay()) {
+                    result.complete(plies);
+                    return;
+                }
+                Game.Color color = game.getCurrentColor();
+                AsyncPlayer player = color == Game.Color.WHITE ? white : black;
+                final Reply<?> reply = game.getPhase() == Game.Phase.PLACEMENT ? player.place(color, game) : player.move(color, game);
+                waiting = reply;
+                if (result.isCancelled()) {
+                    reply.cancel(true);
+                }
+                reply.onDone(new Runnable() {
+                    @Override
+                    public void run() {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                submit(reply);
+                            }
+                        });
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.fail(e);
+            }
+        }
+
+        private void submit(Reply<?> reply) {
+            try {
+                if (result.isDone()) {
+                    return;
+                }
+                Object played = reply.get();
+                Game.Ply ply = played instanceof Game.ValidPosition ? new Game.Ply((Game.ValidPosition) played) : new Game.Ply((Game.ValidMove) played);
+                plies.add(ply);
+                game.submit(ply);
+            } catch (CancellationException e) {
+                result.cancel(false);
+                return;
+            } catch (ExecutionException e) {
+                result.fail(e.getCause());
+                return;
+            } catch (InterruptedException | RuntimeException e) {
+                result.fail(e);
+                return;
+            }
+            next();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.nthalk.stacks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A result that someone completes later, and that whoever waits for it can be called back on instead of blocking.
+ * Completing, failing and cancelling all race, the first one wins and the others return false.
+ */
+public class Reply<T> implements Future<T> {
+
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private int state = PENDING;
+    private T value;
+    private Throwable failure;
+    private List<Runnable> callbacks = new ArrayList<>();
+
+    public static <T> Reply<T> of(T value) {
+        Reply<T> reply = new Reply<>();
+        reply.complete(value);
+        return reply;
+    }
+
+    public boolean complete(T value) {
+        return finish(COMPLETED, value, null);
+    }
+
+    public boolean fail(Throwable failure) {
+        return finish(FAILED, null, failure);
+    }
+
+    /**
+     * Cancels the reply, whoever was going to complete it should check {@link #isDone()} or be called back to stop.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(CANCELLED, null, null);
+    }
+
+    private boolean finish(int state, T value, Throwable failure) {
+        List<Runnable> finished;
+        synchronized (this) {
+            if (this.state != PENDING) {
+                return false;
+            }
+            this.state = state;
+            this.value = value;
+            this.failure = failure;
+            finished = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        for (Runnable callback : finished) {
+            callback.run();
+        }
+        return true;
+    }
+
+    /**
+     * Runs the callback once the reply is done, right away on this thread if it already is, otherwise on the thread
+     * that completes, fails or cancels it.
+     */
+    public void onDone(Runnable callback) {
+        synchronized (this) {
+            if (state == PENDING) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    private T report() throws ExecutionException {
+        if (state == FAILED) {
+            throw new ExecutionException(failure);
+        }
+        if (state == CANCELLED) {
+            throw new CancellationException();
+        }
+        return value;
+    }
+}
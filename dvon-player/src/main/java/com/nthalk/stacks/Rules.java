@@ -0,0 +1,42 @@
+package com.nthalk.stacks;
+
+/**
+ * The board a game is played on and how its placement phase goes. The board is shared by every game played with
+ * the same rules, so positions of different games can be compared.
+ */
+public class Rules {
+
+    public static final Rules DEFAULT = new Rules(new Board(), 3, Game.Color.WHITE);
+
+    private final Board board;
+    private final int redStacks;
+    private final Game.Color firstColor;
+
+    /**
+     * @param redStacks  how many of the first placements are red stacks
+     * @param firstColor the color that places first
+     */
+    public Rules(Board board, int redStacks, Game.Color firstColor) {
+        if (redStacks < 1 || redStacks > board.getPositions().size()) {
+            throw new IllegalArgumentException("Cannot place " + redStacks + " red stacks on " + board.getPositions().size() + " positions");
+        }
+        if (firstColor == Game.Color.RED) {
+            throw new IllegalArgumentException("Red is not a player");
+        }
+        this.board = board;
+        this.redStacks = redStacks;
+        this.firstColor = firstColor;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public int getRedStacks() {
+        return redStacks;
+    }
+
+    public Game.Color getFirstColor() {
+        return firstColor;
+    }
+}
@@ -0,0 +1,111 @@
+package com.nthalk.stacks;
+
+import java.util.List;
+
+/**
+ * A player that searches ahead and can report its analysis while it deepens.
+ */
+public interface SearchPlayer extends Player {
+
+    /**
+     * Searches the game until the limits are reached or {@link #stop()} is called, reporting every completed line to
+     * the listener as it goes. The game is not modified.
+     *
+     * @return the lines of the deepest completed iteration, best first, empty if there is nothing to play
+     */
+    List<Line> analyze(Game game, Limits limits, Listener listener);
+
+    /**
+     * Asks a running {@link #analyze} to return as soon as possible, may be called from any thread.
+     */
+    void stop();
+
+    interface Listener {
+        void onLine(Line line);
+    }
+
+    class Limits {
+        private int depth = Integer.MAX_VALUE;
+        private long moveTimeMillis = 0;
+        private int multiPv = 1;
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public Limits setDepth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        /**
+         * @return how long to search for, 0 searches until the depth is reached or the search is stopped
+         */
+        public long getMoveTimeMillis() {
+            return moveTimeMillis;
+        }
+
+        public Limits setMoveTimeMillis(long moveTimeMillis) {
+            this.moveTimeMillis = moveTimeMillis;
+            return this;
+        }
+
+        public int getMultiPv() {
+            return multiPv;
+        }
+
+        public Limits setMultiPv(int multiPv) {
+            this.multiPv = multiPv;
+            return this;
+        }
+    }
+
+    class Line {
+        private final int multiPv;
+        private final int depth;
+        private final int score;
+        private final long nodes;
+        private final long timeMillis;
+        private final List<Game.Ply> pv;
+
+        public Line(int multiPv, int depth, int score, long nodes, long timeMillis, List<Game.Ply> pv) {
+            this.multiPv = multiPv;
+            this.depth = depth;
+            this.score = score;
+            this.nodes = nodes;
+            this.timeMillis = timeMillis;
+            this.pv = pv;
+        }
+
+        public int getMultiPv() {
+            return multiPv;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return how good the line is for the color to play, in hundredths of a stack
+         */
+        public int getScore() {
+            return score;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getNodesPerSecond() {
+            return timeMillis == 0 ? nodes * 1000 : nodes * 1000 / timeMillis;
+        }
+
+        public List<Game.Ply> getPv() {
+            return pv;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Game;
+
+public interface BatchEvaluator {
+
+    /**
+     * Scores every position of the batch exactly as {@link Evaluator#evaluate} scores each one.
+     *
+     * @param scores where the score of each position is written, by index in the batch
+     */
+    void evaluate(PositionBatch batch, Game.Color color, int[] scores);
+}
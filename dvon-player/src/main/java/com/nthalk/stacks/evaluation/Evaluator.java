@@ -0,0 +1,11 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Game;
+
+public interface Evaluator {
+
+    /**
+     * @return how good the game is for the color, in hundredths of a stack
+     */
+    int evaluate(Game game, Game.Color color);
+}
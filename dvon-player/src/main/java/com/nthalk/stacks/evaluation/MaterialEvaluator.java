@@ -0,0 +1,40 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Game;
+
+/**
+ * Scores a game by the difference in stack sizes, which is exactly the final score once the game is finished.
+ */
+public class MaterialEvaluator implements Evaluator, BatchEvaluator {
+
+    @Override
+    public int evaluate(Game game, Game.Color color) {
+        Game.Color opponent = color == Game.Color.WHITE ? Game.Color.BLACK : Game.Color.WHITE;
+        return (game.getScore(color) - game.getScore(opponent)) * 100;
+    }
+
+    @Override
+    public void evaluate(PositionBatch batch, Game.Color color, int[] scores) {
+        int size = batch.size();
+        int capacity = batch.getCapacity();
+        int cells = batch.getBoard().getPositions().size();
+        byte[] heights = batch.heights;
+        for (int position = 0; position < size; position++) {
+            scores[position] = 0;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            long[] white = cell < 64 ? batch.whiteLow : batch.whiteHigh;
+            long[] black = cell < 64 ? batch.blackLow : batch.blackHigh;
+            int shift = cell & 63;
+            int base = cell * capacity;
+            for (int position = 0; position < size; position++) {
+                int sign = (int) (white[position] >>> shift & 1) - (int) (black[position] >>> shift & 1);
+                scores[position] += (heights[base + position] & 0xff) * sign;
+            }
+        }
+        int scale = color == Game.Color.WHITE ? 100 : -100;
+        for (int position = 0; position < size; position++) {
+            scores[position] *= scale;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.BoardMask;
+import com.nthalk.stacks.Game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates the final score of a game, white's minus black's, as the sum of one weight looked up per tuple. Every
+ * tuple is a triangle of three mutually adjacent positions, and its weight is picked by the state of those three
+ * positions.
+ * <p>
+ * The weights are plain arrays updated without any locking, so trainers on several threads may lose the odd update
+ * to a race, which is harmless for learning.
+ */
+public class NTupleNetwork implements Evaluator, BatchEvaluator {
+
+    /**
+     * An empty position, or the owner of the stack, its height bucket and whether it holds a red piece.
+     */
+    static final int CELL_STATES = 1 + 3 * 4 * 2;
+
+    private static final int TUPLE_STATES = CELL_STATES * CELL_STATES * CELL_STATES;
+    private static final int BLACK = Game.Color.BLACK.ordinal();
+    private static final int WHITE = Game.Color.WHITE.ordinal();
+    private static final int RED = Game.Color.RED.ordinal();
+
+    private final Board board;
+    private final int[][] tuples;
+    private final float[][] weights;
+
+    public NTupleNetwork(Board board) {
+        this.board = board;
+        // Walked in index order so that the weights of a board are always laid out the same way
+        List<int[]> triangles = new ArrayList<>();
+        for (int first = 0; first < board.getPositions().size(); first++) {
+            BoardMask firstAdjacent = board.adjacentMask(first);
+            for (int second = firstAdjacent.nextIndex(first + 1); second >= 0; second = firstAdjacent.nextIndex(second + 1)) {
+                BoardMask bothAdjacent = firstAdjacent.and(board.adjacentMask(second));
+                for (int third = bothAdjacent.nextIndex(second + 1); third >= 0; third = bothAdjacent.nextIndex(third + 1)) {
+                    triangles.add(new int[]{first, second, third});
+                }
+            }
+        }
+        tuples = triangles.toArray(new int[triangles.size()][]);
+        weights = new float[tuples.length][TUPLE_STATES];
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public int getTupleCount() {
+        return tuples.length;
+    }
+
+    /**
+     * @return the state of every position of the game, by position index
+     */
+    public int[] encode(Game game) {
+        int[] cells = new int[board.getPositions().size()];
+        for (int i = 0; i < cells.length; i++) {
+            for (Board.Stack stack : game.getStack(board.getPosition(i))) {
+                cells[i] = encode(stack);
+            }
+        }
+        return cells;
+    }
+
+    static int encode(Board.Stack stack) {
+        int height = Math.min(stack.getSize(), 4) - 1;
+        int red = stack.getHasRed() ? 1 : 0;
+        return 1 + (stack.getOwner().ordinal() * 4 + height) * 2 + red;
+    }
+
+    private int index(int[] tuple, int[] cells) {
+        return (cells[tuple[0]] * CELL_STATES + cells[tuple[1]]) * CELL_STATES + cells[tuple[2]];
+    }
+
+    /**
+     * @return the expected final score of white minus the final score of black
+     */
+    public float value(int[] cells) {
+        float value = 0;
+        for (int t = 0; t < tuples.length; t++) {
+            value += weights[t][index(tuples[t], cells)];
+        }
+        return value;
+    }
+
+    public float value(Game game) {
+        return value(encode(game));
+    }
+
+    /**
+     * Moves the value of the cells by delta, spread evenly over the tuples.
+     */
+    public void update(int[] cells, float delta) {
+        float step = delta / tuples.length;
+        for (int t = 0; t < tuples.length; t++) {
+            weights[t][index(tuples[t], cells)] += step;
+        }
+    }
+
+    @Override
+    public int evaluate(Game game, Game.Color color) {
+        float value = value(game);
+        return Math.round((color == Game.Color.WHITE ? value : -value) * 100);
+    }
+
+    /**
+     * Encodes every cell of every position as {@link #encode(Board.Stack)} does, without branching, and then sums the
+     * weights tuple by tuple over all the positions, in the same order as {@link #value(int[])} so that the scores
+     * are exactly the same.
+     */
+    @Override
+    public void evaluate(PositionBatch batch, Game.Color color, int[] scores) {
+        int size = batch.size();
+        int capacity = batch.getCapacity();
+        int cells = board.getPositions().size();
+        byte[] heights = batch.heights;
+        int[] states = batch.scratch();
+        for (int cell = 0; cell < cells; cell++) {
+            long[] white = cell < 64 ? batch.whiteLow : batch.whiteHigh;
+            long[] black = cell < 64 ? batch.blackLow : batch.blackHigh;
+            long[] red = cell < 64 ? batch.redLow : batch.redHigh;
+            int shift = cell & 63;
+            int base = cell * capacity;
+            for (int position = 0; position < size; position++) {
+                int height = heights[base + position] & 0xff;
+                int occupied = Math.min(height, 1);
+                int isWhite = (int) (white[position] >>> shift & 1);
+                int isBlack = (int) (black[position] >>> shift & 1);
+                int owner = isWhite * WHITE + isBlack * BLACK + (occupied - isWhite - isBlack) * RED;
+                int hasRed = (int) (red[position] >>> shift & 1);
+                states[base + position] = occupied * (1 + (owner * 4 + Math.min(height, 4) - 1) * 2 + hasRed);
+            }
+        }
+
+        float[] values = new float[size];
+        for (int t = 0; t < tuples.length; t++) {
+            float[] tupleWeights = weights[t];
+            int first = tuples[t][0] * capacity;
+            int second = tuples[t][1] * capacity;
+            int third = tuples[t][2] * capacity;
+            for (int position = 0; position < size; position++) {
+                int index = (states[first + position] * CELL_STATES + states[second + position]) * CELL_STATES + states[third + position];
+                values[position] += tupleWeights[index];
+            }
+        }
+        for (int position = 0; position < size; position++) {
+            scores[position] = Math.round((color == Game.Color.WHITE ? values[position] : -values[position]) * 100);
+        }
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(tuples.length);
+        for (float[] tupleWeights : weights) {
+            for (float weight : tupleWeights) {
+                out.writeFloat(weight);
+            }
+        }
+        out.flush();
+    }
+
+    public void read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        int tupleCount = in.readInt();
+        if (tupleCount != tuples.length) {
+            throw new IOException("Expected weights for " + tuples.length + " tuples but got " + tupleCount);
+        }
+        for (float[] tupleWeights : weights) {
+            for (int i = 0; i < tupleWeights.length; i++) {
+                tupleWeights[i] = in.readFloat();
+            }
+        }
+    }
+}
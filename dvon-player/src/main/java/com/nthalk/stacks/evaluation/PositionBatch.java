@@ -0,0 +1,132 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.BoardMask;
+import com.nthalk.stacks.Game;
+
+/**
+ * Many positions of the same board laid out as one primitive array per field rather than one object per position,
+ * for a {@link BatchEvaluator} to score them all in one pass.
+ * <p>
+ * Heights are stored position after position for each cell in turn, and the owner and red masks are two words per
+ * position like {@link BoardMask}, so the inner loops of an evaluator walk each array in order over positions, with
+ * no branches and no objects, which the JIT compiles to SIMD instructions where it can.
+ */
+public class PositionBatch {
+
+    private final Board board;
+    private final int cells;
+    private final int capacity;
+    // Indexed by cell * capacity + position, unsigned
+    final byte[] heights;
+    // Indexed by position, low words for the cells below 64
+    final long[] whiteLow;
+    final long[] whiteHigh;
+    final long[] blackLow;
+    final long[] blackHigh;
+    final long[] redLow;
+    final long[] redHigh;
+    private int size;
+    private int[] scratch;
+
+    public PositionBatch(Board board, int capacity) {
+        this.board = board;
+        this.cells = board.getPositions().size();
+        this.capacity = capacity;
+        heights = new byte[cells * capacity];
+        whiteLow = new long[capacity];
+        whiteHigh = new long[capacity];
+        blackLow = new long[capacity];
+        blackHigh = new long[capacity];
+        redLow = new long[capacity];
+        redHigh = new long[capacity];
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the position of the game in the batch
+     */
+    public int add(Game game) {
+        if (size == capacity) {
+            throw new IllegalStateException("The batch is full at " + capacity + " positions");
+        }
+        int position = size++;
+        whiteLow[position] = 0;
+        whiteHigh[position] = 0;
+        blackLow[position] = 0;
+        blackHigh[position] = 0;
+        redLow[position] = 0;
+        redHigh[position] = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            heights[cell * capacity + position] = 0;
+        }
+        BoardMask occupied = game.getOccupied();
+        for (int cell = occupied.nextIndex(0); cell >= 0; cell = occupied.nextIndex(cell + 1)) {
+            Board.Stack stack = game.getStack(board.getPosition(cell)).get();
+            heights[cell * capacity + position] = (byte) stack.getSize();
+            long bit = 1L << (cell & 63);
+            if (stack.getOwner() == Game.Color.WHITE) {
+                (cell < 64 ? whiteLow : whiteHigh)[position] |= bit;
+            } else if (stack.getOwner() == Game.Color.BLACK) {
+                (cell < 64 ? blackLow : blackHigh)[position] |= bit;
+            }
+            if (stack.getHasRed()) {
+                (cell < 64 ? redLow : redHigh)[position] |= bit;
+            }
+        }
+        return position;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int getHeight(int position, int cell) {
+        return heights[cell * capacity + position] & 0xff;
+    }
+
+    /**
+     * @return the owner of the stack, or null if the cell is empty
+     */
+    public Game.Color getOwner(int position, int cell) {
+        if (getHeight(position, cell) == 0) {
+            return null;
+        }
+        if (bit(cell < 64 ? whiteLow : whiteHigh, position, cell) != 0) {
+            return Game.Color.WHITE;
+        }
+        if (bit(cell < 64 ? blackLow : blackHigh, position, cell) != 0) {
+            return Game.Color.BLACK;
+        }
+        return Game.Color.RED;
+    }
+
+    public boolean getHasRed(int position, int cell) {
+        return bit(cell < 64 ? redLow : redHigh, position, cell) != 0;
+    }
+
+    static int bit(long[] masks, int position, int cell) {
+        return (int) (masks[position] >>> (cell & 63)) & 1;
+    }
+
+    /**
+     * @return an array of at least cells * capacity ints for an evaluator to work in, reused between calls
+     */
+    int[] scratch() {
+        if (scratch == null) {
+            scratch = new int[cells * capacity];
+        }
+        return scratch;
+    }
+}
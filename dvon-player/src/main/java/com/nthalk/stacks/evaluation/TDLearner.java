@@ -0,0 +1,133 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trains an {@link NTupleNetwork} with TD(0) from self-play. Every thread plays its own games, picking the play that
+ * the network likes best for the color to play, or a random one now and then, and moves the value of each position
+ * reached toward the value of the next one, or toward the final score once the game is over. All threads share and
+ * update the same weights.
+ */
+public class TDLearner {
+
+    private static final Logger LOG = Logger.getLogger(TDLearner.class);
+
+    private final NTupleNetwork network;
+    private final Rules rules;
+    private final float learningRate;
+    private final double exploration;
+
+    /**
+     * @param learningRate how far each value is moved toward its target, between 0 and 1
+     * @param exploration  the chance of playing a random play instead of the best one
+     */
+    public TDLearner(NTupleNetwork network, Rules rules, float learningRate, double exploration) {
+        this.network = network;
+        this.rules = rules;
+        this.learningRate = learningRate;
+        this.exploration = exploration;
+    }
+
+    /**
+     * Plays and learns from the given number of games, spread over the threads.
+     */
+    public void train(int games, int threads, long seed) throws InterruptedException {
+        final AtomicInteger remaining = new AtomicInteger(games);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final Random random = new Random(seed + i);
+                workers.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int played = 0;
+                        while (remaining.getAndDecrement() > 0) {
+                            playAndLearn(random);
+                            played++;
+                        }
+                        return played;
+                    }
+                }));
+            }
+            for (Future<Integer> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Training failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return the final score of white minus the final score of black
+     */
+    int playAndLearn(Random random) {
+        Game game = new Game(rules);
+        int[] previous = network.encode(game);
+        while (game.findValidPlay()) {
+            List<Game.Ply> plies = game.getValidPlies();
+            Game next = null;
+            int[] nextCells = null;
+            if (random.nextDouble() < exploration) {
+                next = new Game(game);
+                next.submit(plies.get(random.nextInt(plies.size())));
+                nextCells = network.encode(next);
+            } else {
+                // White wants the value as high as possible, black as low as possible
+                float sign = game.getCurrentColor() == Game.Color.WHITE ? 1 : -1;
+                float best = Float.NEGATIVE_INFINITY;
+                for (Game.Ply ply : plies) {
+                    Game child = new Game(game);
+                    child.submit(ply);
+                    int[] childCells = network.encode(child);
+                    float value = sign * network.value(childCells);
+                    if (value > best) {
+                        best = value;
+                        next = child;
+                        nextCells = childCells;
+                    }
+                }
+            }
+            network.update(previous, learningRate * (network.value(nextCells) - network.value(previous)));
+            previous = nextCells;
+            game = next;
+        }
+        int finalScore = game.getScore(Game.Color.WHITE) - game.getScore(Game.Color.BLACK);
+        network.update(previous, learningRate * (finalScore - network.value(previous)));
+        return finalScore;
+    }
+
+    /**
+     * Trains a network for the default rules and writes its weights, arguments are the number of games, the number
+     * of threads and the file to write.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int games = Integer.parseInt(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        NTupleNetwork network = new NTupleNetwork(Rules.DEFAULT.getBoard());
+        long start = System.currentTimeMillis();
+        new TDLearner(network, Rules.DEFAULT, 0.1f, 0.1).train(games, threads, start);
+        LOG.info("Trained on " + games + " games in " + (System.currentTimeMillis() - start) + "ms");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[2]))) {
+            network.write(out);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.nthalk.stacks.journal;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the plies of running games, so that they survive a restart of the process.
+ * <p>
+ * Every ply submitted to an attached game is appended before {@link Game#submit} returns, and is on disk by then.
+ * Games submitting at the same time share one sync: the first thread to find no sync running writes and syncs every
+ * record appended so far, while the others wait for it instead of syncing on their own.
+ * <p>
+ * Every so many records the log is compacted, replaced by a {@link GameCodec} snapshot of each game still running.
+ * Opening a journal replays it, and the games that had not finished are available from {@link #getRecovered()}.
+ * <p>
+ * A record is its length, its type, the id of its game, its payload and a CRC32 of all but the length. A record torn
+ * by a crash fails its length or its checksum, and is dropped along with anything after it.
+ */
+public class GameJournal implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(GameJournal.class);
+
+    private static final byte SNAPSHOT = 1;
+    private static final byte PLACEMENT = 2;
+    private static final byte MOVE = 3;
+    private static final byte FINISH = 4;
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int HEADER_BYTES = 1 + 8;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final File file;
+    private final Rules rules;
+    private final int snapshotBytes;
+    private final int compactEvery;
+    private final Map<Long, Game> recovered = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    // The latest state of every running game, as of the last record appended for it
+    private final Map<Long, byte[]> snapshots = new LinkedHashMap<>();
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+    private long appended;
+    private long durable;
+    private boolean syncing;
+    private int sinceCompaction;
+    private long syncs;
+    private IOException failure;
+    private boolean closed;
+    // Only used by the thread syncing
+    private FileChannel channel;
+
+    /**
+     * Opens the journal, replaying whatever it already holds.
+     *
+     * @param compactEvery how many records to append between compactions
+     */
+    public GameJournal(File file, Rules rules, int compactEvery) throws IOException {
+        if (compactEvery < 1) {
+            throw new IllegalArgumentException("Expected at least one record between compactions but got " + compactEvery);
+        }
+        this.file = file;
+        this.rules = rules;
+        this.compactEvery = compactEvery;
+        snapshotBytes = GameCodec.binarySize(rules);
+        long end = replay();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > end) {
+            LOG.warn("Dropping " + (channel.size() - end) + " torn bytes at the end of " + file);
+            channel.truncate(end);
+        }
+        channel.position(end);
+    }
+
+    /**
+     * @return the games that were running when the journal was last closed or the process died, by id
+     */
+    public Map<Long, Game> getRecovered() {
+        return Collections.unmodifiableMap(recovered);
+    }
+
+    /**
+     * @return how many times the journal was synced to disk
+     */
+    public long getSyncs() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Journals every ply submitted to the game from now on. A game that is not running in the journal yet, unlike a
+     * recovered one, is first journaled as a snapshot of its current state.
+     */
+    public void attach(final long id, Game game) throws IOException {
+        long sequence;
+        byte[] snapshot = snapshot(game);
+        lock.lock();
+        try {
+            sequence = snapshots.containsKey(id) ? appended : append(SNAPSHOT, id, snapshot, snapshot);
+        } finally {
+            lock.unlock();
+        }
+        sync(sequence);
+        game.setListener(new Game.Listener() {
+            @Override
+            public void onSubmit(Game game, Game.Ply ply) {
+                try {
+                    journal(id, game, ply);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not journal " + ply + " of game " + id, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forgets the game, which will not be recovered anymore.
+     */
+    public void finish(long id) throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            sequence = append(FINISH, id, new byte[0], null);
+        } finally {
+            lock.unlock();
+        }
+        sync(sequence);
+    }
+
+    private void journal(long id, Game game, Game.Ply ply) throws IOException {
+        byte[] snapshot = snapshot(game);
+        long sequence;
+        lock.lock();
+        try {
+            if (ply.isPlacement()) {
+                byte cell = (byte) ply.getPlacement().getPosition().getIndex();
+                sequence = append(PLACEMENT, id, new byte[]{cell}, snapshot);
+            } else {
+                byte from = (byte) ply.getMove().getFrom().getIndex();
+                byte to = (byte) ply.getMove().getTo().getIndex();
+                sequence = append(MOVE, id, new byte[]{from, to}, snapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sync(sequence);
+    }
+
+    private byte[] snapshot(Game game) {
+        ByteBuffer buffer = ByteBuffer.allocate(snapshotBytes);
+        GameCodec.write(game, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Must hold the lock.
+     *
+     * @param snapshot the state of the game once the record is applied, null once it has finished
+     * @return the sequence of the record, to sync up to
+     */
+    private long append(byte type, long id, byte[] payload, byte[] snapshot) throws IOException {
+        if (closed) {
+            throw new IOException("The journal " + file + " is closed");
+        }
+        if (failure != null) {
+            throw new IOException("The journal " + file + " has failed", failure);
+        }
+        int bytes = LENGTH_BYTES + HEADER_BYTES + payload.length + CHECKSUM_BYTES;
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        putRecord(pending, type, id, payload);
+        if (snapshot == null) {
+            snapshots.remove(id);
+        } else {
+            snapshots.put(id, snapshot);
+        }
+        sinceCompaction++;
+        return ++appended;
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte type, long id, byte[] payload) {
+        int start = buffer.position();
+        buffer.putInt(HEADER_BYTES + payload.length);
+        buffer.put(type);
+        buffer.putLong(id);
+        buffer.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start + LENGTH_BYTES, HEADER_BYTES + payload.length);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Returns once every record up to the sequence is on disk, either synced by this thread along with every other
+     * record appended so far, or by whichever thread is already syncing.
+     */
+    private void sync(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durable < sequence) {
+                if (failure != null) {
+                    throw new IOException("The journal " + file + " has failed", failure);
+                }
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = appended;
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                List<Map.Entry<Long, byte[]>> running = null;
+                if (sinceCompaction >= compactEvery) {
+                    // The snapshots are exactly as of the batch, so they replace it along with everything before it.
+                    // Copied into a map of their own, the entries of this one are overwritten by later appends
+                    running = new ArrayList<>(new LinkedHashMap<>(snapshots).entrySet());
+                    sinceCompaction = 0;
+                }
+                lock.unlock();
+                IOException failed = null;
+                try {
+                    batch.flip();
+                    if (running == null) {
+                        while (batch.hasRemaining()) {
+                            channel.write(batch);
+                        }
+                        channel.force(false);
+                    } else {
+                        compacting();
+                        compact(running);
+                    }
+                } catch (IOException e) {
+                    failed = e;
+                } finally {
+                    batch.clear();
+                    lock.lock();
+                }
+                syncing = false;
+                syncs++;
+                if (failed == null) {
+                    durable = target;
+                } else {
+                    failure = failed;
+                }
+                synced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called on the syncing thread, without the lock, just before the snapshots are compacted. Does nothing, tests
+     * append from other threads here.
+     */
+    void compacting() {
+    }
+
+    private void compact(List<Map.Entry<Long, byte[]>> running) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(running.size() * (LENGTH_BYTES + HEADER_BYTES + snapshotBytes + CHECKSUM_BYTES));
+        for (Map.Entry<Long, byte[]> entry : running) {
+            putRecord(buffer, SNAPSHOT, entry.getKey(), entry.getValue());
+        }
+        buffer.flip();
+        File compacted = new File(file.getPath() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Compacted " + file + " to " + running.size() + " running games");
+        }
+    }
+
+    /**
+     * @return the length of the journal up to its last whole record
+     */
+    private long replay() throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        Board board = rules.getBoard();
+        long end = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] record = new byte[HEADER_BYTES + snapshotBytes];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                    if (length < HEADER_BYTES || length > record.length) {
+                        break;
+                    }
+                    in.readFully(record, 0, length);
+                    crc.reset();
+                    crc.update(record, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+                byte type = buffer.get();
+                long id = buffer.getLong();
+                Game game = recovered.get(id);
+                if (type == SNAPSHOT) {
+                    recovered.put(id, GameCodec.read(buffer, rules));
+                } else if (type == FINISH) {
+                    recovered.remove(id);
+                } else if (game == null) {
+                    throw new IOException("The journal " + file + " has a ply for game " + id + " before its snapshot");
+                } else {
+                    // Only plies the game accepted were journaled, so they are submitted as they are
+                    game.findValidPlay();
+                    if (type == PLACEMENT) {
+                        game.submit(new Game.ValidPosition(board.getPosition(buffer.get() & 0xff)));
+                    } else {
+                        Board.Position from = board.getPosition(buffer.get() & 0xff);
+                        Board.Position to = board.getPosition(buffer.get() & 0xff);
+                        game.submit(new Game.ValidMove(new Game.Move(from, to)));
+                    }
+                }
+                end += LENGTH_BYTES + length + CHECKSUM_BYTES;
+            }
+        }
+        for (Map.Entry<Long, Game> entry : recovered.entrySet()) {
+            snapshots.put(entry.getKey(), snapshot(entry.getValue()));
+        }
+        return end;
+    }
+
+    /**
+     * Waits for everything appended to be on disk and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            sequence = appended;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            sync(sequence);
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+                while (syncing) {
+                    synced.awaitUninterruptibly();
+                }
+                channel.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.nthalk.stacks.metrics;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The counters and timers of the engine hot paths, published over JMX as "com.nthalk.stacks:type=Metrics".
+ * <p>
+ * Instrumentation is only enabled when the JVM is started with -Ddvon.metrics=true. The flag is a constant so that,
+ * when disabled, the guarded instrumentation is compiled away.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    public static final boolean ENABLED = Boolean.getBoolean("dvon.metrics");
+
+    public static final StripedCounter MOVES_GENERATED = new StripedCounter("movesGenerated");
+    public static final StripedCounter MOVES_APPLIED = new StripedCounter("movesApplied");
+    public static final StripedCounter STACKS_REMOVED = new StripedCounter("stacksRemoved");
+    public static final StripedCounter SEARCH_NODES = new StripedCounter("searchNodes");
+
+    public static final Timer GAME = new Timer("game");
+    public static final Timer SUBMIT = new Timer("submit");
+    public static final Timer VALID_MOVES = new Timer("validMoves");
+    public static final Timer FIND_VALID_PLAY = new Timer("findValidPlay");
+    public static final Timer CONNECTIVITY_SWEEP = new Timer("connectivitySweep");
+    public static final Timer PLAYER_MOVE = new Timer("playerMove");
+    public static final Timer PLAYER_PLACE = new Timer("playerPlace");
+    public static final Timer SEARCH_ITERATION = new Timer("searchIteration");
+
+    private static final Logger LOG = Logger.getLogger(Metrics.class);
+    private static final List<StripedCounter> COUNTERS = Arrays.asList(MOVES_GENERATED, MOVES_APPLIED, STACKS_REMOVED, SEARCH_NODES);
+    private static final List<Timer> TIMERS = Arrays.asList(GAME, SUBMIT, VALID_MOVES, FIND_VALID_PLAY, CONNECTIVITY_SWEEP, PLAYER_MOVE, PLAYER_PLACE, SEARCH_ITERATION);
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName("com.nthalk.stacks:type=Metrics"));
+            } catch (JMException e) {
+                LOG.warn("Could not register metrics with JMX", e);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the start time to hand to {@link Timer#stop(long)}, or 0 when metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (StripedCounter counter : COUNTERS) {
+            values.put(counter.getName(), counter.sum());
+        }
+        for (Timer timer : TIMERS) {
+            values.put(timer.getName() + ".count", timer.getCount());
+            values.put(timer.getName() + ".totalNanos", timer.getTotalNanos());
+            values.put(timer.getName() + ".maxNanos", timer.getMaxNanos());
+        }
+        return values;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public Map<String, Long> getValues() {
+        return snapshot();
+    }
+}
@@ -0,0 +1,13 @@
+package com.nthalk.stacks.metrics;
+
+import java.util.Map;
+
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    /**
+     * @return every counter by name, timers are reported as their count, total and max nanoseconds
+     */
+    Map<String, Long> getValues();
+}
@@ -0,0 +1,42 @@
+package com.nthalk.stacks.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over several padded cells so that threads adding at the same time rarely touch the same cache
+ * line. Reading the sum is comparatively slow and only as consistent as the adds that have finished.
+ */
+public class StripedCounter {
+
+    // 8 longs is a 64 byte cache line
+    private static final int PADDING = 8;
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+
+    private final String name;
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public StripedCounter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        cells.addAndGet(stripe * PADDING, delta);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += cells.get(stripe * PADDING);
+        }
+        return sum;
+    }
+}
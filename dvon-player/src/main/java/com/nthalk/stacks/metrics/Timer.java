@@ -0,0 +1,54 @@
+package com.nthalk.stacks.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts and times occurrences of an event, such as a search iteration or a whole game.
+ */
+public class Timer {
+
+    private final String name;
+    private final StripedCounter count;
+    private final StripedCounter totalNanos;
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public Timer(String name) {
+        this.name = name;
+        this.count = new StripedCounter(name + ".count");
+        this.totalNanos = new StripedCounter(name + ".totalNanos");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param start the value returned by {@link Metrics#start()}, nothing is recorded if metrics are disabled
+     */
+    public void stop(long start) {
+        if (start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+}
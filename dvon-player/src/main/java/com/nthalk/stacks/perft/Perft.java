@@ -0,0 +1,240 @@
+package com.nthalk.stacks.perft;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counts the positions reached after exactly a number of plies, to check move generation against known counts and
+ * to time it. A game that finishes early contributes nothing, and a color that has to pass does not use up a ply.
+ * <p>
+ * The plies of the root are counted in parallel, and the counts of whole subtrees are shared between them in a
+ * fixed size cache keyed by the {@link GameCodec} snapshot, so transpositions, such as the same placements in another
+ * order, are only counted once. The cache keeps whichever count was stored last in a slot, and only holds subtrees of
+ * depth 3 and up, shallower ones being quicker to count again than to snapshot.
+ * <p>
+ * A run can be stopped from another thread, the root plies not counted by then are left out of its result.
+ */
+public class Perft {
+
+    private static final int MIN_CACHED_DEPTH = 3;
+
+    private final ForkJoinPool pool;
+    private final AtomicReferenceArray<Entry> cache;
+    private final int mask;
+    private volatile boolean stopped;
+
+    /**
+     * @param cacheEntries a power of two, or 0 to count every subtree
+     */
+    public Perft(ForkJoinPool pool, int cacheEntries) {
+        if (Integer.bitCount(cacheEntries) > 1) {
+            throw new IllegalArgumentException("Expected a power of two cache entries but got " + cacheEntries);
+        }
+        this.pool = pool;
+        cache = cacheEntries == 0 ? null : new AtomicReferenceArray<Entry>(cacheEntries);
+        mask = cacheEntries - 1;
+    }
+
+    /**
+     * Counts the positions after the given number of plies, in parallel for every ply of the game.
+     */
+    public Result run(Game game, final int depth) {
+        stopped = false;
+        long start = System.currentTimeMillis();
+        final Game position = new Game(game);
+        if (depth == 0 || !position.findValidPlay()) {
+            return new Result(Collections.<Game.Ply>emptyList(), new long[0], depth == 0 ? 1 : 0, false, System.currentTimeMillis() - start);
+        }
+
+        final List<Game.Ply> plies = position.getValidPlies();
+        Collections.sort(plies, new Comparator<Game.Ply>() {
+            @Override
+            public int compare(Game.Ply a, Game.Ply b) {
+                return a.toString().compareTo(b.toString());
+            }
+        });
+        final List<RecursiveTask<Long>> tasks = new ArrayList<>();
+        for (final Game.Ply ply : plies) {
+            tasks.add(new RecursiveTask<Long>() {
+                @Override
+                protected Long compute() {
+                    if (stopped) {
+                        return null;
+                    }
+                    Game child = new Game(position);
+                    child.submit(ply);
+                    long count = count(child, depth - 1);
+                    // Cut short if stopped while counting
+                    return stopped ? null : count;
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        List<Game.Ply> counted = new ArrayList<>();
+        long[] counts = new long[plies.size()];
+        long nodes = 0;
+        for (int i = 0; i < plies.size(); i++) {
+            Long count = tasks.get(i).join();
+            if (count != null) {
+                counts[counted.size()] = count;
+                counted.add(plies.get(i));
+                nodes += count;
+            }
+        }
+        return new Result(counted, Arrays.copyOf(counts, counted.size()), nodes, counted.size() < plies.size(),
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Stops the run in progress, if any, which returns without the root plies it has not finished counting.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Counts the positions after the given number of plies on this thread, the game is not modified.
+     */
+    public long count(Game game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (stopped) {
+            return 0;
+        }
+        Game position = new Game(game);
+        if (!position.findValidPlay()) {
+            return 0;
+        }
+        List<Game.Ply> plies = position.getValidPlies();
+        if (depth == 1) {
+            return plies.size();
+        }
+
+        byte[] key = null;
+        int slot = 0;
+        boolean cached = cache != null && depth >= MIN_CACHED_DEPTH;
+        if (cached) {
+            ByteBuffer snapshot = ByteBuffer.allocate(GameCodec.binarySize(position.getRules()));
+            GameCodec.write(position, snapshot);
+            key = snapshot.array();
+            slot = (Arrays.hashCode(key) * 31 + depth) & mask;
+            Entry entry = cache.get(slot);
+            if (entry != null && entry.depth == depth && Arrays.equals(entry.key, key)) {
+                return entry.count;
+            }
+        }
+
+        long count = 0;
+        for (Game.Ply ply : plies) {
+            Game child = new Game(position);
+            child.submit(ply);
+            count += count(child, depth - 1);
+        }
+        // A count cut short by stopping is never cached
+        if (cached && !stopped) {
+            cache.set(slot, new Entry(key, depth, count));
+        }
+        return count;
+    }
+
+    private static class Entry {
+        private final byte[] key;
+        private final int depth;
+        private final long count;
+
+        private Entry(byte[] key, int depth, long count) {
+            this.key = key;
+            this.depth = depth;
+            this.count = count;
+        }
+    }
+
+    public static class Result {
+        private final List<Game.Ply> plies;
+        private final long[] counts;
+        private final long nodes;
+        private final boolean stopped;
+        private final long timeMillis;
+
+        private Result(List<Game.Ply> plies, long[] counts, long nodes, boolean stopped, long timeMillis) {
+            this.plies = plies;
+            this.counts = counts;
+            this.nodes = nodes;
+            this.stopped = stopped;
+            this.timeMillis = timeMillis;
+        }
+
+        /**
+         * @return the plies of the root that were counted, by name
+         */
+        public List<Game.Ply> getPlies() {
+            return plies;
+        }
+
+        /**
+         * @return the positions counted after the nth ply of the root
+         */
+        public long getCount(int ply) {
+            return counts[ply];
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return whether the run was stopped before counting every ply of the root
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getNodesPerSecond() {
+            return timeMillis == 0 ? nodes * 1000 : nodes * 1000 / timeMillis;
+        }
+    }
+
+    /**
+     * Counts from the start of a game or from a game written by {@link GameCodec}, arguments are the depth and
+     * optionally the game.
+     */
+    public static void main(String[] args) {
+        int depth = Integer.parseInt(args[0]);
+        Game game = new Game();
+        if (args.length > 1) {
+            StringBuilder notation = new StringBuilder(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                notation.append(' ').append(args[i]);
+            }
+            game = GameCodec.parseNotation(notation, Rules.DEFAULT);
+        }
+        Result result = new Perft(new ForkJoinPool(), 1 << 20).run(game, depth);
+        for (int i = 0; i < result.getPlies().size(); i++) {
+            System.out.println(result.getPlies().get(i) + ": " + result.getCount(i));
+        }
+        System.out.println("nodes " + result.getNodes() + " time " + result.getTimeMillis() + " nps " + result.getNodesPerSecond());
+    }
+}
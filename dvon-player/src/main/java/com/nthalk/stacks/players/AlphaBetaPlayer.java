@@ -0,0 +1,209 @@
+package com.nthalk.stacks.players;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.SearchPlayer;
+import com.nthalk.stacks.evaluation.Evaluator;
+import com.nthalk.stacks.evaluation.MaterialEvaluator;
+import com.nthalk.stacks.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Iterative deepening negamax with alpha beta pruning. Positions at the search horizon are scored by an
+ * {@link Evaluator}, finished games by their final score.
+ */
+public class AlphaBetaPlayer implements SearchPlayer {
+
+    private static final int INFINITY = Integer.MAX_VALUE - 1;
+    private static final Evaluator FINAL_SCORE = new MaterialEvaluator();
+
+    private final Limits limits;
+    private final Evaluator evaluator;
+    private volatile boolean stopped;
+    private long deadline;
+    private long nodes;
+    private boolean depthLimited;
+    private boolean abortable;
+
+    public AlphaBetaPlayer(Limits limits, Evaluator evaluator) {
+        this.limits = limits;
+        this.evaluator = evaluator;
+    }
+
+    public AlphaBetaPlayer(Evaluator evaluator) {
+        this(new Limits().setMoveTimeMillis(1000), evaluator);
+    }
+
+    public AlphaBetaPlayer() {
+        this(FINAL_SCORE);
+    }
+
+    @Override
+    public Game.ValidMove move(Game.Color color, Game game) {
+        return best(game).getMove();
+    }
+
+    @Override
+    public Game.ValidPosition place(Game.Color color, Game game) {
+        return best(game).getPlacement();
+    }
+
+    private Game.Ply best(Game game) {
+        List<Line> lines = analyze(game, limits, null);
+        if (lines.isEmpty()) {
+            throw new IllegalStateException("This should not have happened");
+        }
+        return lines.get(0).getPv().get(0);
+    }
+
+    @Override
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public List<Line> analyze(Game game, Limits limits, Listener listener) {
+        stopped = false;
+        nodes = 0;
+        long start = System.nanoTime();
+        deadline = limits.getMoveTimeMillis() > 0 ? start + limits.getMoveTimeMillis() * 1000000L : 0;
+
+        Game root = new Game(game);
+        List<Line> lines = new ArrayList<>();
+        if (!root.findValidPlay()) {
+            return lines;
+        }
+
+        List<RootPly> rootPlies = new ArrayList<>();
+        for (Game.Ply ply : root.getValidPlies()) {
+            rootPlies.add(new RootPly(ply));
+        }
+        int multiPv = Math.min(limits.getMultiPv(), rootPlies.size());
+
+        for (int depth = 1; depth <= limits.getDepth(); depth++) {
+            // The first iteration is always completed so there is something to play
+            abortable = depth > 1;
+            depthLimited = false;
+            long iterationStart = Metrics.start();
+            long iterationNodes = nodes;
+            int threshold = -INFINITY;
+            List<RootPly> scored = new ArrayList<>();
+            for (RootPly rootPly : rootPlies) {
+                Game child = new Game(root);
+                child.submit(rootPly.ply);
+                List<Game.Ply> pv = new ArrayList<>();
+                int score = -negamax(child, depth - 1, -INFINITY, -threshold, pv);
+                if (isAborted()) {
+                    break;
+                }
+                rootPly.score = score;
+                rootPly.pv = pv;
+                scored.add(rootPly);
+                if (scored.size() >= multiPv) {
+                    Collections.sort(scored, BEST_FIRST);
+                    threshold = scored.get(multiPv - 1).score;
+                }
+            }
+            if (Metrics.ENABLED) {
+                Metrics.SEARCH_NODES.add(nodes - iterationNodes);
+            }
+            if (isAborted()) {
+                break;
+            }
+            Metrics.SEARCH_ITERATION.stop(iterationStart);
+
+            Collections.sort(rootPlies, BEST_FIRST);
+            long timeMillis = (System.nanoTime() - start) / 1000000L;
+            lines = new ArrayList<>();
+            for (int i = 0; i < multiPv; i++) {
+                RootPly rootPly = rootPlies.get(i);
+                List<Game.Ply> pv = new ArrayList<>();
+                pv.add(rootPly.ply);
+                pv.addAll(rootPly.pv);
+                Line line = new Line(i + 1, depth, rootPly.score, nodes, timeMillis, pv);
+                lines.add(line);
+                if (listener != null) {
+                    listener.onLine(line);
+                }
+            }
+
+            if (!depthLimited) {
+                // The whole game tree was searched, going deeper will not change anything
+                break;
+            }
+        }
+        return lines;
+    }
+
+    private boolean isAborted() {
+        return abortable && stopped;
+    }
+
+    private int negamax(Game game, int depth, int alpha, int beta, List<Game.Ply> pv) {
+        nodes++;
+        if (abortable && deadline != 0 && System.nanoTime() > deadline) {
+            stopped = true;
+        }
+        if (isAborted()) {
+            return 0;
+        }
+
+        Game.Color color = game.getCurrentColor();
+        if (!game.findValidPlay()) {
+            return FINAL_SCORE.evaluate(game, color);
+        }
+        if (game.getCurrentColor() != color) {
+            // The color to play had nothing to do and passed
+            return -negamax(game, depth, -beta, -alpha, pv);
+        }
+        if (depth == 0) {
+            depthLimited = true;
+            return evaluator.evaluate(game, color);
+        }
+
+        int best = -INFINITY;
+        List<Game.Ply> childPv = new ArrayList<>();
+        for (Game.Ply ply : game.getValidPlies()) {
+            Game child = new Game(game);
+            child.submit(ply);
+            childPv.clear();
+            int score = -negamax(child, depth - 1, -beta, -alpha, childPv);
+            if (isAborted()) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                pv.clear();
+                pv.add(ply);
+                pv.addAll(childPv);
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private static final Comparator<RootPly> BEST_FIRST = new Comparator<RootPly>() {
+        @Override
+        public int compare(RootPly a, RootPly b) {
+            return Integer.compare(b.score, a.score);
+        }
+    };
+
+    private static class RootPly {
+        private final Game.Ply ply;
+        private int score = -INFINITY;
+        private List<Game.Ply> pv = Collections.emptyList();
+
+        private RootPly(Game.Ply ply) {
+            this.ply = ply;
+        }
+    }
+}
@@ -9,7 +9,18 @@ import java.util.Random;
 import java.util.Set;
 
 public class RandomPlayer implements Player {
-    Random random = new Random();
+    Random random;
+
+    public RandomPlayer() {
+        this(new Random());
+    }
+
+    /**
+     * Plays the same plies for the same sequence of random numbers, such as from a seeded random.
+     */
+    public RandomPlayer(Random random) {
+        this.random = random;
+    }
 
     private <T> T randomElement(Set<T> set) {
         int size = set.size();
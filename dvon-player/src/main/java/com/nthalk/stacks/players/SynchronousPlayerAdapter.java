@@ -0,0 +1,72 @@
+package com.nthalk.stacks.players;
+
+import com.nthalk.stacks.AsyncPlayer;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Player;
+import com.nthalk.stacks.Reply;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a synchronous player on an executor. Cancelling a reply interrupts the player if it is still thinking, and its
+ * answer is dropped either way.
+ */
+public class SynchronousPlayerAdapter implements AsyncPlayer {
+
+    private final Player player;
+    private final ExecutorService executor;
+
+    public SynchronousPlayerAdapter(Player player, ExecutorService executor) {
+        this.player = TimedPlayer.of(player);
+        this.executor = executor;
+    }
+
+    @Override
+    public Reply<Game.ValidMove> move(final Game.Color color, final Game game) {
+        final Reply<Game.ValidMove> reply = new Reply<>();
+        run(reply, new Runnable() {
+            @Override
+            public void run() {
+                reply.complete(player.move(color, game));
+            }
+        });
+        return reply;
+    }
+
+    @Override
+    public Reply<Game.ValidPosition> place(final Game.Color color, final Game game) {
+        final Reply<Game.ValidPosition> reply = new Reply<>();
+        run(reply, new Runnable() {
+            @Override
+            public void run() {
+                reply.complete(player.place(color, game));
+            }
+        });
+        return reply;
+    }
+
+    private void run(final Reply<?> reply, final Runnable think) {
+        final Future<?> task = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (reply.isDone()) {
+                    return;
+                }
+                try {
+                    think.run();
+                } catch (RuntimeException e) {
+                    reply.fail(e);
+                }
+            }
+        });
+        reply.onDone(new Runnable() {
+            @Override
+            public void run() {
+                if (reply.isCancelled()) {
+                    task.cancel(true);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package com.nthalk.stacks.players;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Player;
+import com.nthalk.stacks.metrics.Metrics;
+
+/**
+ * Times every ply a player is asked for as {@link Metrics#PLAYER_MOVE} or {@link Metrics#PLAYER_PLACE}.
+ * <p>
+ * Games wrap the players they are given, and so does {@link SynchronousPlayerAdapter}, so whatever drives the game
+ * the time spent thinking is recorded once.
+ */
+public class TimedPlayer implements Player {
+
+    private final Player player;
+
+    private TimedPlayer(Player player) {
+        this.player = player;
+    }
+
+    /**
+     * @return the player timed, or as it is if metrics are disabled or it is already timed
+     */
+    public static Player of(Player player) {
+        if (!Metrics.ENABLED || player == null || player instanceof TimedPlayer) {
+            return player;
+        }
+        return new TimedPlayer(player);
+    }
+
+    @Override
+    public Game.ValidMove move(Game.Color color, Game game) {
+        long start = Metrics.start();
+        try {
+            return player.move(color, game);
+        } finally {
+            Metrics.PLAYER_MOVE.stop(start);
+        }
+    }
+
+    @Override
+    public Game.ValidPosition place(Game.Color color, Game game) {
+        long start = Metrics.start();
+        try {
+            return player.place(color, game);
+        } finally {
+            Metrics.PLAYER_PLACE.stop(start);
+        }
+    }
+}
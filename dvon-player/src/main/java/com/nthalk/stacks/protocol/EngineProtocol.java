@@ -0,0 +1,293 @@
+package com.nthalk.stacks.protocol;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.SearchPlayer;
+import com.nthalk.stacks.evaluation.NTupleNetwork;
+import com.nthalk.stacks.exceptions.InvalidMoveException;
+import com.nthalk.stacks.exceptions.InvalidPlacementException;
+import com.nthalk.stacks.perft.Perft;
+import com.nthalk.stacks.players.AlphaBetaPlayer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A line based text protocol, modelled after UCI, for driving a {@link SearchPlayer} from another process.
+ * <p>
+ * Commands read from the input:
+ * <pre>
+ * dvon                                        identify, answered with "dvonok"
+ * isready                                     answered with "readyok"
+ * setoption name MultiPV value &lt;n&gt;            report the n best lines
+ * newgame                                     start over from an empty board
+ * position startpos [moves &lt;ply&gt;...]          plies are written as "F3" for placements or "F3-G4" for moves
+ * position notation &lt;game&gt; [moves &lt;ply&gt;...]   the game as written by {@link GameCodec}
+ * go [depth &lt;n&gt;] [movetime &lt;ms&gt;] [infinite]  start analysing the current position
+ * perft &lt;n&gt;                                   count the positions n plies after the current position
+ * stop                                        stop analysing or counting, the best ply found or the plies
+ *                                             counted so far are reported
+ * quit
+ * </pre>
+ * While analysing every completed line is written as
+ * "info depth &lt;n&gt; multipv &lt;k&gt; score &lt;n&gt; nodes &lt;n&gt; nps &lt;n&gt; time &lt;ms&gt; pv &lt;ply&gt;...",
+ * followed by "bestmove &lt;ply&gt;" when the search ends. Scores are in hundredths of a stack for the color to play.
+ * Perft answers with "&lt;ply&gt;: &lt;count&gt;" for every ply of the position, then
+ * "nodes &lt;n&gt; time &lt;ms&gt; nps &lt;n&gt;".
+ * <p>
+ * Started with the path of {@link NTupleNetwork} weights as argument, the search evaluates positions with them.
+ */
+public class EngineProtocol {
+
+    private static final int PERFT_CACHE_ENTRIES = 1 << 20;
+
+    private final SearchPlayer player;
+    private final BufferedReader in;
+    private final PrintStream out;
+    private Game game = new Game();
+    private int multiPv = 1;
+    private Thread search;
+    private Perft perft;
+
+    public EngineProtocol(SearchPlayer player, InputStream in, PrintStream out) {
+        this.player = player;
+        this.in = new BufferedReader(new InputStreamReader(in));
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        AlphaBetaPlayer player = new AlphaBetaPlayer();
+        if (args.length > 0) {
+            NTupleNetwork network = new NTupleNetwork(Rules.DEFAULT.getBoard());
+            try (InputStream weights = new BufferedInputStream(new FileInputStream(args[0]))) {
+                network.read(weights);
+            }
+            player = new AlphaBetaPlayer(network);
+        }
+        new EngineProtocol(player, System.in, System.out).run();
+    }
+
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line.trim())) {
+                break;
+            }
+        }
+        stop();
+    }
+
+    /**
+     * @return false once the engine should quit
+     */
+    boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        String command = tokens[0];
+        if (command.isEmpty()) {
+            return true;
+        }
+        switch (command) {
+            case "dvon":
+                send("id name dvon-player");
+                send("option name MultiPV type spin default 1");
+                send("dvonok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "newgame":
+                stop();
+                game = new Game();
+                break;
+            case "position":
+                stop();
+                position(tokens);
+                break;
+            case "go":
+                stop();
+                go(tokens);
+                break;
+            case "perft":
+                stop();
+                perft(tokens);
+                break;
+            case "stop":
+                stop();
+                break;
+            case "quit":
+                return false;
+            default:
+                send("info string unknown command " + command);
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        if (tokens.length == 5 && tokens[1].equals("name") && tokens[2].equals("MultiPV") && tokens[3].equals("value")) {
+            try {
+                multiPv = Math.max(1, Integer.parseInt(tokens[4]));
+            } catch (NumberFormatException e) {
+                send("info string invalid MultiPV " + tokens[4]);
+            }
+        } else {
+            send("info string unknown option");
+        }
+    }
+
+    private void position(String[] tokens) {
+        Game position;
+        int movesIndex;
+        if (tokens.length >= 2 && tokens[1].equals("startpos")) {
+            position = new Game();
+            movesIndex = 2;
+        } else if (tokens.length >= 5 && tokens[1].equals("notation")) {
+            try {
+                position = GameCodec.parseNotation(tokens[2] + " " + tokens[3] + " " + tokens[4], Rules.DEFAULT);
+            } catch (IllegalArgumentException e) {
+                send("info string invalid notation: " + e.getMessage());
+                return;
+            }
+            movesIndex = 5;
+        } else {
+            send("info string expected startpos or notation");
+            return;
+        }
+        if (tokens.length > movesIndex && !tokens[movesIndex].equals("moves")) {
+            send("info string expected moves after the position");
+            return;
+        }
+        for (int i = movesIndex + 1; i < tokens.length; i++) {
+            if (!position.findValidPlay()) {
+                send("info string the game is already finished before " + tokens[i]);
+                return;
+            }
+            try {
+                position.submit(position.validate(tokens[i]));
+            } catch (InvalidPlacementException | InvalidMoveException e) {
+                send("info string invalid ply " + tokens[i] + ": " + e.getMessage());
+                return;
+            }
+        }
+        game = position;
+    }
+
+    private void go(String[] tokens) {
+        final SearchPlayer.Limits limits = new SearchPlayer.Limits().setMultiPv(multiPv);
+        for (int i = 1; i < tokens.length; i++) {
+            try {
+                if (tokens[i].equals("depth") && i + 1 < tokens.length) {
+                    limits.setDepth(Integer.parseInt(tokens[++i]));
+                } else if (tokens[i].equals("movetime") && i + 1 < tokens.length) {
+                    limits.setMoveTimeMillis(Long.parseLong(tokens[++i]));
+                }
+            } catch (NumberFormatException e) {
+                send("info string invalid " + tokens[i - 1] + " " + tokens[i]);
+                return;
+            }
+        }
+
+        final Game analysed = new Game(game);
+        search = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<SearchPlayer.Line> lines = player.analyze(analysed, limits, new SearchPlayer.Listener() {
+                    @Override
+                    public void onLine(SearchPlayer.Line line) {
+                        send(format(line));
+                    }
+                });
+                send("bestmove " + (lines.isEmpty() ? "none" : lines.get(0).getPv().get(0).toString()));
+            }
+        }, "dvon-search");
+        search.start();
+    }
+
+    private void perft(String[] tokens) {
+        final int depth;
+        try {
+            depth = tokens.length == 2 ? Integer.parseInt(tokens[1]) : -1;
+        } catch (NumberFormatException e) {
+            send("info string invalid depth " + tokens[1]);
+            return;
+        }
+        if (depth < 0) {
+            send("info string expected a depth");
+            return;
+        }
+        if (perft == null) {
+            perft = new Perft(new ForkJoinPool(), PERFT_CACHE_ENTRIES);
+        }
+
+        final Perft counting = perft;
+        final Game counted = new Game(game);
+        search = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Perft.Result result = counting.run(counted, depth);
+                for (int i = 0; i < result.getPlies().size(); i++) {
+                    send(result.getPlies().get(i) + ": " + result.getCount(i));
+                }
+                if (result.isStopped()) {
+                    send("info string perft stopped, only the plies above were counted");
+                }
+                send("nodes " + result.getNodes() + " time " + result.getTimeMillis() + " nps " + result.getNodesPerSecond());
+            }
+        }, "dvon-perft");
+        search.start();
+    }
+
+    /**
+     * Stops any running search or perft, returning once its best move or counts have been reported.
+     */
+    private void stop() {
+        if (search == null) {
+            return;
+        }
+        try {
+            while (search.isAlive()) {
+                // The search may not have started yet, keep asking until it has noticed
+                player.stop();
+                if (perft != null) {
+                    perft.stop();
+                }
+                search.join(5);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        search = null;
+    }
+
+    static String format(SearchPlayer.Line line) {
+        StringBuilder builder = new StringBuilder("info");
+        builder.append(" depth ").append(line.getDepth());
+        builder.append(" multipv ").append(line.getMultiPv());
+        builder.append(" score ").append(line.getScore());
+        builder.append(" nodes ").append(line.getNodes());
+        builder.append(" nps ").append(line.getNodesPerSecond());
+        builder.append(" time ").append(line.getTimeMillis());
+        builder.append(" pv");
+        for (Game.Ply ply : line.getPv()) {
+            builder.append(' ').append(ply);
+        }
+        return builder.toString();
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+}
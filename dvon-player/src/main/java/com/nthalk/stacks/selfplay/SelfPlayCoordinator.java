@@ -0,0 +1,319 @@
+package com.nthalk.stacks.selfplay;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.exceptions.InvalidMoveException;
+import com.nthalk.stacks.exceptions.InvalidPlacementException;
+import com.nthalk.stacks.store.GameStore;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands out seeded batches of self-play games to {@link SelfPlayWorker}s connecting over a socket, and stores the
+ * games they send back in a {@link GameStore}.
+ * <p>
+ * A worker is given one batch at a time. When a worker disconnects its batch goes back to the queue, and once the
+ * queue is empty idle workers are given copies of the batches still being played, fewest copies first. Whichever copy
+ * is done first is kept, so a slow or stuck worker only holds up the run until another worker has played its batch
+ * again.
+ * <p>
+ * Batches are stored in order, and their games only depend on the seed, so the store is the same however many workers
+ * played it and whatever happened to them.
+ */
+public class SelfPlayCoordinator implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(SelfPlayCoordinator.class);
+
+    private final ServerSocket serverSocket;
+    private final Rules rules = Rules.DEFAULT;
+    private final int games;
+    private final int batchSize;
+    private final int batches;
+    private final long seed;
+    private final GameStore.Writer writer;
+
+    private final Set<Socket> connections = new HashSet<>();
+    private final Deque<Integer> queue = new ArrayDeque<>();
+    private final int[] holders;
+    private final boolean[] finished;
+    private final Map<Integer, List<Played>> completed = new HashMap<>();
+    private int written;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Listens on the loopback address only, for workers on this machine.
+     *
+     * @param port 0 to pick any free port
+     */
+    public SelfPlayCoordinator(int port, int games, int batchSize, long seed, File directory) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, games, batchSize, seed, directory);
+    }
+
+    /**
+     * @param bindAddress the address to listen on, such as the wildcard address for workers on other machines, or
+     *                    null for the wildcard address
+     * @param port        0 to pick any free port
+     */
+    public SelfPlayCoordinator(InetAddress bindAddress, int port, int games, int batchSize, long seed, File directory) throws IOException {
+        this.games = games;
+        this.batchSize = batchSize;
+        this.seed = seed;
+        batches = (games + batchSize - 1) / batchSize;
+        holders = new int[batches];
+        finished = new boolean[batches];
+        for (int batch = 0; batch < batches; batch++) {
+            queue.add(batch);
+        }
+        writer = new GameStore.Writer(directory, rules);
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    long seed(int batch) {
+        return seed + batch;
+    }
+
+    int size(int batch) {
+        return Math.min(batchSize, games - batch * batchSize);
+    }
+
+    /**
+     * Serves workers until every game is stored.
+     */
+    public void run() throws IOException, InterruptedException {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "dvon-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        long start = System.currentTimeMillis();
+        try {
+            synchronized (this) {
+                while (written < batches && failure == null) {
+                    wait();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            LOG.info("Stored " + games + " games in " + (System.currentTimeMillis() - start) + "ms");
+        } finally {
+            close();
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // Closed once every game is stored
+                return;
+            }
+            synchronized (this) {
+                if (!closed) {
+                    connections.add(socket);
+                }
+            }
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }, "dvon-coordinator-" + socket.getPort());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        Integer batch = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            while (isConnected(socket) && (batch = next()) != null) {
+                out.write("batch " + batch + " " + seed(batch) + " " + size(batch) + "\n");
+                out.flush();
+                List<Played> played = new ArrayList<>();
+                while (true) {
+                    String line = in.readLine();
+                    if (line == null) {
+                        throw new EOFException("Left during batch " + batch);
+                    }
+                    if (line.equals("done " + batch)) {
+                        break;
+                    }
+                    if (!line.startsWith("game ")) {
+                        throw new IOException("Unexpected " + line);
+                    }
+                    played.add(replay(line.substring("game ".length())));
+                }
+                if (played.size() != size(batch)) {
+                    throw new IOException("Expected " + size(batch) + " games for batch " + batch + " but got " + played.size());
+                }
+                complete(batch, played);
+                batch = null;
+            }
+            out.write("quit\n");
+            out.flush();
+        } catch (SocketException e) {
+            // Closed by the worker, or by close() once every game is stored
+            LOG.debug("Worker " + socket.getRemoteSocketAddress() + " disconnected: " + e.getMessage());
+        } catch (IOException e) {
+            LOG.warn("Dropping worker " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                connections.remove(socket);
+                if (batch != null) {
+                    release(batch);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close " + socket, e);
+            }
+        }
+    }
+
+    private synchronized boolean isConnected(Socket socket) {
+        return connections.contains(socket);
+    }
+
+    private Played replay(String line) throws IOException {
+        Game game = new Game(rules);
+        List<Game.Ply> plies = new ArrayList<>();
+        try {
+            for (String ply : line.split(" ")) {
+                if (!game.findValidPlay()) {
+                    throw new IOException("Game goes on after it finished: " + line);
+                }
+                Game.Ply valid = game.validate(ply);
+                plies.add(valid);
+                game.submit(valid);
+            }
+        } catch (InvalidPlacementException | InvalidMoveException e) {
+            throw new IOException("Invalid game " + line + ": " + e.getMessage());
+        }
+        if (game.findValidPlay()) {
+            throw new IOException("Game is not finished: " + line);
+        }
+        return new Played(plies, game);
+    }
+
+    /**
+     * @return the batch to play next, null once every batch is done
+     */
+    private synchronized Integer next() {
+        Integer batch = queue.poll();
+        if (batch == null) {
+            for (int candidate = written; candidate < batches; candidate++) {
+                if (!finished[candidate] && (batch == null || holders[candidate] < holders[batch])) {
+                    batch = candidate;
+                }
+            }
+            if (batch == null) {
+                return null;
+            }
+            LOG.info("Playing batch " + batch + " again, along with " + holders[batch] + " other workers");
+        }
+        holders[batch]++;
+        return batch;
+    }
+
+    private synchronized void release(int batch) {
+        holders[batch]--;
+        if (!finished[batch] && holders[batch] == 0) {
+            queue.addFirst(batch);
+        }
+    }
+
+    private synchronized void complete(int batch, List<Played> played) {
+        holders[batch]--;
+        if (finished[batch] || closed) {
+            return;
+        }
+        finished[batch] = true;
+        completed.put(batch, played);
+        try {
+            while (completed.containsKey(written)) {
+                for (Played game : completed.remove(written)) {
+                    writer.append(game.plies, game.game);
+                }
+                written++;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops serving, disconnecting any worker still playing, and flushes the store.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Socket connection : connections) {
+                connection.close();
+            }
+            writer.close();
+        }
+    }
+
+    private static class Played {
+        private final List<Game.Ply> plies;
+        private final Game game;
+
+        private Played(List<Game.Ply> plies, Game game) {
+            this.plies = plies;
+            this.game = game;
+        }
+    }
+
+    /**
+     * Arguments are the port to listen on, the number of games, the number of games per batch, the seed, the
+     * directory of the store and optionally the address to listen on, such as 0.0.0.0 for workers on other machines.
+     * The loopback address is listened on by default.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        InetAddress bindAddress = args.length > 5 ? InetAddress.getByName(args[5]) : InetAddress.getLoopbackAddress();
+        SelfPlayCoordinator coordinator = new SelfPlayCoordinator(bindAddress, Integer.parseInt(args[0]),
+            Integer.parseInt(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]), new File(args[4]));
+        LOG.info("Waiting for workers on " + bindAddress.getHostAddress() + " port " + coordinator.getPort());
+        coordinator.run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.nthalk.stacks.selfplay;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Player;
+import com.nthalk.stacks.players.RandomPlayer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays the batches of games handed out by a {@link SelfPlayCoordinator}, until told to quit.
+ * <p>
+ * A batch arrives as "batch &lt;id&gt; &lt;seed&gt; &lt;games&gt;". Every game is sent back as "game" followed by
+ * its plies, and the batch ends with "done &lt;id&gt;". The games of a batch only depend on its seed, so any worker
+ * plays the same games for the same batch.
+ */
+public class SelfPlayWorker {
+
+    private final String host;
+    private final int port;
+
+    public SelfPlayWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @return the plies of every game of the batch, in order
+     */
+    public static List<List<Game.Ply>> playBatch(long seed, int games) {
+        Player player = new RandomPlayer(new Random(seed));
+        List<List<Game.Ply>> played = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            Game game = new Game();
+            game.setPlayer(Game.Color.WHITE, player);
+            game.setPlayer(Game.Color.BLACK, player);
+            played.add(game.play());
+        }
+        return played;
+    }
+
+    public void run() throws IOException {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.split(" ");
+                if (tokens[0].equals("quit")) {
+                    return;
+                }
+                if (!tokens[0].equals("batch") || tokens.length != 4) {
+                    throw new IOException("Unexpected " + line);
+                }
+                StringBuilder builder = new StringBuilder();
+                for (List<Game.Ply> plies : playBatch(Long.parseLong(tokens[2]), Integer.parseInt(tokens[3]))) {
+                    builder.setLength(0);
+                    builder.append("game");
+                    for (Game.Ply ply : plies) {
+                        builder.append(' ').append(ply);
+                    }
+                    out.write(builder.append('\n').toString());
+                }
+                out.write("done " + tokens[1] + "\n");
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Arguments are the host and port of the coordinator.
+     */
+    public static void main(String[] args) throws IOException {
+        new SelfPlayWorker(args[0], Integer.parseInt(args[1])).run();
+    }
+}
@@ -0,0 +1,56 @@
+package com.nthalk.stacks.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read only column of fixed width records, memory mapped in segments so it can grow past 2GB. A record never
+ * spans two segments.
+ */
+class Column {
+
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private final int width;
+    private final long records;
+    private final long recordsPerSegment;
+    private final ByteBuffer[] segments;
+
+    Column(FileChannel channel, int width) throws IOException {
+        this.width = width;
+        long size = channel.size();
+        records = size / width;
+        recordsPerSegment = SEGMENT_BYTES / width;
+        long segmentBytes = recordsPerSegment * width;
+        segments = new ByteBuffer[(int) ((records * width + segmentBytes - 1) / segmentBytes)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * segmentBytes;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, records * width - start));
+        }
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    byte getByte(long record, int offset) {
+        return segment(record).get(index(record, offset));
+    }
+
+    short getShort(long record, int offset) {
+        return segment(record).getShort(index(record, offset));
+    }
+
+    long getLong(long record, int offset) {
+        return segment(record).getLong(index(record, offset));
+    }
+
+    private ByteBuffer segment(long record) {
+        return segments[(int) (record / recordsPerSegment)];
+    }
+
+    private int index(long record, int offset) {
+        return (int) (record % recordsPerSegment) * width + offset;
+    }
+}
@@ -0,0 +1,350 @@
+package com.nthalk.stacks.store;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finished games stored column by column in a directory, one file per column, read through memory maps so that
+ * scanning millions of games never puts them on the heap.
+ * <p>
+ * Cells are stored as {@link Board.Position#getIndex()}, so a store is only meaningful with the rules it was written
+ * with.
+ */
+public class GameStore implements Closeable {
+
+    private static final String REDS = "reds.col";
+    private static final String PLACEMENTS = "placements.col";
+    private static final String MOVE_ENDS = "move-ends.col";
+    private static final String MOVES = "moves.col";
+    private static final String SCORES = "scores.col";
+    private static final String WINNERS = "winners.col";
+
+    private static final int SCAN_CHUNK = 1 << 14;
+    private static final byte DRAW = -1;
+
+    private final int cells;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final Column reds;
+    private final Column placements;
+    private final Column moveEnds;
+    private final Column moves;
+    private final Column scores;
+    private final Column winners;
+    private final long size;
+
+    public GameStore(File directory, Rules rules) throws IOException {
+        cells = rules.getBoard().getPositions().size();
+        reds = open(new File(directory, REDS), rules.getRedStacks());
+        placements = open(new File(directory, PLACEMENTS), cells);
+        moveEnds = open(new File(directory, MOVE_ENDS), 8);
+        moves = open(new File(directory, MOVES), 2);
+        scores = open(new File(directory, SCORES), 4);
+        winners = open(new File(directory, WINNERS), 1);
+        // The winner is written last, so only games with a winner are complete
+        size = Math.min(winners.getRecords(), Math.min(reds.getRecords(), Math.min(placements.getRecords(),
+            Math.min(moveEnds.getRecords(), scores.getRecords()))));
+    }
+
+    private Column open(File file, int width) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        channels.add(channel);
+        return new Column(channel, width);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the cell of the nth red stack placed
+     */
+    public int getRedCell(long game, int red) {
+        return reds.getByte(game, red) & 0xff;
+    }
+
+    /**
+     * @return the cell placed at the nth placement, reds included
+     */
+    public int getPlacementCell(long game, int placement) {
+        return placements.getByte(game, placement) & 0xff;
+    }
+
+    public int getMoveCount(long game) {
+        return (int) (moveEnds.getLong(game, 0) - getMoveStart(game));
+    }
+
+    public int getMoveFrom(long game, int move) {
+        return moves.getByte(getMoveStart(game) + move, 0) & 0xff;
+    }
+
+    public int getMoveTo(long game, int move) {
+        return moves.getByte(getMoveStart(game) + move, 1) & 0xff;
+    }
+
+    private long getMoveStart(long game) {
+        return game == 0 ? 0 : moveEnds.getLong(game - 1, 0);
+    }
+
+    public int getScore(long game, Game.Color color) {
+        return scores.getShort(game, color == Game.Color.WHITE ? 0 : 2);
+    }
+
+    /**
+     * @return the winner of the game, or null for a draw
+     */
+    public Game.Color getWinner(long game) {
+        byte winner = winners.getByte(game, 0);
+        return winner == DRAW ? null : Game.Color.values()[winner];
+    }
+
+    /**
+     * Scans every game in parallel, each worker accumulating into its own accumulator before they are combined.
+     */
+    public <A> A scan(ForkJoinPool pool, Aggregator<A> aggregator) {
+        return pool.invoke(new Scan<>(aggregator, 0, size));
+    }
+
+    public <A> A scan(Aggregator<A> aggregator) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return scan(pool, aggregator);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    public interface Aggregator<A> {
+        A create();
+
+        void accumulate(A accumulator, GameStore store, long game);
+
+        A combine(A left, A right);
+    }
+
+    private class Scan<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final Aggregator<A> aggregator;
+        private final long from;
+        private final long to;
+
+        private Scan(Aggregator<A> aggregator, long from, long to) {
+            this.aggregator = aggregator;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= SCAN_CHUNK) {
+                A accumulator = aggregator.create();
+                for (long game = from; game < to; game++) {
+                    aggregator.accumulate(accumulator, GameStore.this, game);
+                }
+                return accumulator;
+            }
+            long middle = (from + to) >>> 1;
+            Scan<A> left = new Scan<>(aggregator, from, middle);
+            left.fork();
+            A right = new Scan<>(aggregator, middle, to).compute();
+            return aggregator.combine(left.join(), right);
+        }
+    }
+
+    /**
+     * Appends finished games to the column files of a store, creating them if needed.
+     */
+    public static class Writer implements Closeable {
+
+        private static final int BUFFER_BYTES = 1 << 16;
+
+        private final int cells;
+        private final int redStacks;
+        private final List<FileChannel> channels = new ArrayList<>();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final List<Integer> widths = new ArrayList<>();
+        private final ByteBuffer reds;
+        private final ByteBuffer placements;
+        private final ByteBuffer moves;
+        private final ByteBuffer moveEnds;
+        private final ByteBuffer scores;
+        private final ByteBuffer winners;
+        private long moveEnd;
+
+        public Writer(File directory, Rules rules) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            cells = rules.getBoard().getPositions().size();
+            redStacks = rules.getRedStacks();
+            // In the order they are flushed, moves before the move ends that point past them
+            reds = open(new File(directory, REDS), redStacks);
+            placements = open(new File(directory, PLACEMENTS), cells);
+            moves = open(new File(directory, MOVES), 2);
+            moveEnds = open(new File(directory, MOVE_ENDS), 8);
+            scores = open(new File(directory, SCORES), 4);
+            winners = open(new File(directory, WINNERS), 1);
+            truncate();
+        }
+
+        private ByteBuffer open(File file, int width) throws IOException {
+            channels.add(new RandomAccessFile(file, "rw").getChannel());
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffers.add(buffer);
+            widths.add(width);
+            return buffer;
+        }
+
+        /**
+         * Drops whatever a crash part way through a flush left of incomplete games, so that appending carries on
+         * from the last game written to every column.
+         */
+        private void truncate() throws IOException {
+            long games = Long.MAX_VALUE;
+            for (int i = 0; i < buffers.size(); i++) {
+                if (buffers.get(i) != moves) {
+                    games = Math.min(games, channels.get(i).size() / widths.get(i));
+                }
+            }
+            long movesWritten = channel(moves).size() / 2;
+            moveEnd = 0;
+            while (games > 0) {
+                moveEnd = readMoveEnd(games - 1);
+                if (moveEnd <= movesWritten) {
+                    break;
+                }
+                games--;
+                moveEnd = 0;
+            }
+            for (int i = 0; i < buffers.size(); i++) {
+                long size = buffers.get(i) == moves ? moveEnd * 2 : games * widths.get(i);
+                FileChannel channel = channels.get(i);
+                channel.truncate(size);
+                channel.position(size);
+            }
+        }
+
+        private long readMoveEnd(long game) throws IOException {
+            FileChannel channel = channel(moveEnds);
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, game * 8 + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + MOVE_ENDS);
+                }
+            }
+            buffer.flip();
+            return buffer.getLong();
+        }
+
+        private FileChannel channel(ByteBuffer buffer) {
+            // Not indexOf, buffers are equal whenever their remaining bytes are
+            for (int i = 0; i < buffers.size(); i++) {
+                if (buffers.get(i) == buffer) {
+                    return channels.get(i);
+                }
+            }
+            throw new IllegalArgumentException("Not a column of this writer");
+        }
+
+        /**
+         * @param plies every ply played, in order
+         * @param game  the game once it has finished
+         */
+        public void append(List<Game.Ply> plies, Game game) throws IOException {
+            if (game.getPhase() != Game.Phase.FINISHED) {
+                throw new IllegalArgumentException("Only finished games can be stored");
+            }
+            int placed = 0;
+            for (Game.Ply ply : plies) {
+                if (ply.isPlacement()) {
+                    placed++;
+                }
+            }
+            if (placed != cells) {
+                throw new IllegalArgumentException("Expected " + cells + " placements but got " + placed);
+            }
+
+            ensureRemaining(cells + 8 + 4 + 1);
+            placed = 0;
+            int moved = 0;
+            for (Game.Ply ply : plies) {
+                if (ply.isPlacement()) {
+                    byte cell = (byte) ply.getPlacement().getPosition().getIndex();
+                    if (placed < redStacks) {
+                        reds.put(cell);
+                    }
+                    placements.put(cell);
+                    placed++;
+                } else {
+                    if (moves.remaining() < 2) {
+                        // Moves are the only column written ahead of the game being complete
+                        flush(moves);
+                    }
+                    moves.put((byte) ply.getMove().getFrom().getIndex());
+                    moves.put((byte) ply.getMove().getTo().getIndex());
+                    moved++;
+                }
+            }
+            moveEnd += moved;
+            moveEnds.putLong(moveEnd);
+            scores.putShort((short) game.getScore(Game.Color.WHITE));
+            scores.putShort((short) game.getScore(Game.Color.BLACK));
+            Game.Color winner = game.getWinner();
+            winners.put(winner == null ? DRAW : (byte) winner.ordinal());
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            for (ByteBuffer buffer : buffers) {
+                if (buffer.remaining() < bytes) {
+                    flush();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Writes out every buffered game, the winners last so that readers never count an incomplete game.
+         */
+        public void flush() throws IOException {
+            for (ByteBuffer buffer : buffers) {
+                flush(buffer);
+            }
+        }
+
+        private void flush(ByteBuffer buffer) throws IOException {
+            FileChannel channel = channel(buffer);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+}
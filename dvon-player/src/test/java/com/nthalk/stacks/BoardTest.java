@@ -0,0 +1,65 @@
+package com.nthalk.stacks;
+
+import com.nthalk.stacks.players.RandomPlayer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoardTest {
+
+    @Test
+    public void testDefaultIsAHexagon() {
+        Board board = new Board();
+        Board hexagon = Board.hexagon(5, 10);
+        assertEquals(board.getPositions().size(), hexagon.getPositions().size());
+        for (int i = 0; i < board.getPositions().size(); i++) {
+            assertEquals(board.getPosition(i).toString(), hexagon.getPosition(i).toString());
+        }
+    }
+
+    @Test
+    public void testAdjacentMasks() {
+        Board board = Board.hexagon(7, 19);
+        assertEquals(121, board.getPositions().size());
+        assertEquals(BoardMask.range(121), board.getMask());
+        for (Board.Position position : board.getPositions()) {
+            BoardMask adjacent = board.adjacentMask(position.getIndex());
+            assertEquals(board.adjacentPositions(position).size(), adjacent.count());
+            for (Board.Position adjacentPosition : board.adjacentPositions(position)) {
+                assertTrue(adjacent.contains(adjacentPosition.getIndex()));
+                assertTrue(board.adjacentMask(adjacentPosition.getIndex()).contains(position.getIndex()));
+            }
+            assertEquals(position, board.getPosition(position.toString()));
+        }
+    }
+
+    @Test
+    public void testMaskAcrossWords() {
+        BoardMask mask = BoardMask.EMPTY.with(3).with(63).with(64).with(127);
+        assertEquals(4, mask.count());
+        assertTrue(mask.contains(64));
+        assertFalse(mask.contains(65));
+        assertEquals(63, mask.nextIndex(4));
+        assertEquals(64, mask.nextIndex(64));
+        assertEquals(127, mask.nextIndex(65));
+        assertEquals(-1, mask.nextIndex(128));
+        assertEquals(BoardMask.EMPTY.with(3).with(127), mask.andNot(BoardMask.range(64).without(3)).without(64));
+    }
+
+    @Test
+    public void testLargeBoardGame() {
+        Game game = new Game(new Rules(Board.hexagon(7, 19), 5, Game.Color.BLACK));
+        assertEquals(Game.Color.BLACK, game.getCurrentColor());
+        game.setPlayer(Game.Color.WHITE, new RandomPlayer());
+        game.setPlayer(Game.Color.BLACK, new RandomPlayer());
+        game.play();
+        assertEquals(Game.Phase.FINISHED, game.getPhase());
+        for (Board.Position position : game.getBoard().getPositions()) {
+            boolean hasRed = !game.getStack(position).isEmpty() && game.getStack(position).get().getHasRed();
+            assertEquals(hasRed, game.getReds().contains(position.getIndex()));
+            assertEquals(!game.getStack(position).isEmpty(), game.getOccupied().contains(position.getIndex()));
+        }
+    }
+}
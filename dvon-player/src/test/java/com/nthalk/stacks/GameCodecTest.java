@@ -0,0 +1,84 @@
+package com.nthalk.stacks;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class GameCodecTest {
+
+    private static List<String> plies(Game game) {
+        List<String> plies = new ArrayList<>();
+        if (new Game(game).findValidPlay()) {
+            Game copy = new Game(game);
+            copy.findValidPlay();
+            for (Game.Ply ply : copy.getValidPlies()) {
+                plies.add(ply.toString());
+            }
+        }
+        Collections.sort(plies);
+        return plies;
+    }
+
+    @Test
+    public void testStart() {
+        Game game = new Game();
+        assertEquals("......../........./........../........./........ w placement", GameCodec.toNotation(game));
+    }
+
+    @Test
+    public void testParse() {
+        Game game = GameCodec.parseNotation("r.....w3*./b2......../........../........./........ b play", Rules.DEFAULT);
+        Board board = game.getBoard();
+        assertEquals(Game.Phase.PLAY, game.getPhase());
+        assertEquals(Game.Color.BLACK, game.getCurrentColor());
+        Board.Stack stack = game.getStack(board.getPosition("I1")).get();
+        assertEquals(Game.Color.WHITE, stack.getOwner());
+        assertEquals(3, stack.getSize());
+        assertEquals(true, stack.getHasRed());
+        assertEquals(Game.Color.RED, game.getStack(board.getPosition("C1")).get().getOwner());
+        assertEquals(2, game.getStack(board.getPosition("B2")).get().getSize());
+        assertEquals(2, game.getReds().count());
+        assertEquals(3, game.getOccupied().count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseShortRow() {
+        GameCodec.parseNotation("......./........./........../........./........ w placement", Rules.DEFAULT);
+    }
+
+    @Test
+    public void testRoundTrips() {
+        Random random = new Random(7);
+        ByteBuffer buffer = ByteBuffer.allocate(GameCodec.binarySize(Rules.DEFAULT));
+        for (int g = 0; g < 20; g++) {
+            Game game = new Game();
+            while (true) {
+                String notation = GameCodec.toNotation(game);
+                Game parsed = GameCodec.parseNotation(notation, Rules.DEFAULT);
+                assertEquals(notation, GameCodec.toNotation(parsed));
+                assertEquals(plies(game), plies(parsed));
+
+                buffer.clear();
+                GameCodec.write(game, buffer);
+                assertEquals(0, buffer.remaining());
+                buffer.flip();
+                Game read = GameCodec.read(buffer, Rules.DEFAULT);
+                assertEquals(notation, GameCodec.toNotation(read));
+                assertEquals(game.getScore(Game.Color.WHITE), read.getScore(Game.Color.WHITE));
+                assertEquals(game.getScore(Game.Color.BLACK), read.getScore(Game.Color.BLACK));
+
+                if (!game.findValidPlay()) {
+                    break;
+                }
+                List<Game.Ply> plies = game.getValidPlies();
+                game.submit(plies.get(random.nextInt(plies.size())));
+            }
+        }
+    }
+}
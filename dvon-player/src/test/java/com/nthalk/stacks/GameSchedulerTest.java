@@ -0,0 +1,131 @@
+package com.nthalk.stacks;
+
+import com.nthalk.stacks.players.RandomPlayer;
+import com.nthalk.stacks.players.SynchronousPlayerAdapter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GameSchedulerTest {
+
+    private static final int GAMES = 2000;
+
+    /**
+     * Never answers on its own, so that the test decides when and how it replies.
+     */
+    private static class PendingPlayer implements AsyncPlayer {
+        private final List<Reply<?>> replies = new ArrayList<>();
+
+        @Override
+        public synchronized Reply<Game.ValidMove> move(Game.Color color, Game game) {
+            Reply<Game.ValidMove> reply = new Reply<>();
+            replies.add(reply);
+            notifyAll();
+            return reply;
+        }
+
+        @Override
+        public synchronized Reply<Game.ValidPosition> place(Game.Color color, Game game) {
+            Reply<Game.ValidPosition> reply = new Reply<>();
+            replies.add(reply);
+            notifyAll();
+            return reply;
+        }
+
+        synchronized Reply<?> awaitReply() throws InterruptedException {
+            while (replies.isEmpty()) {
+                wait();
+            }
+            return replies.get(0);
+        }
+    }
+
+    @Test
+    public void testManyGamesOnFewThreads() throws Exception {
+        ExecutorService scheduling = Executors.newFixedThreadPool(2);
+        ExecutorService thinking = Executors.newFixedThreadPool(4);
+        try {
+            GameScheduler scheduler = new GameScheduler(scheduling);
+            AsyncPlayer player = new SynchronousPlayerAdapter(new RandomPlayer(), thinking);
+            List<Game> games = new ArrayList<>();
+            List<Reply<List<Game.Ply>>> results = new ArrayList<>();
+            for (int i = 0; i < GAMES; i++) {
+                Game game = new Game();
+                games.add(game);
+                results.add(scheduler.play(game, player, player));
+            }
+            for (int i = 0; i < GAMES; i++) {
+                List<Game.Ply> plies = results.get(i).get(1, TimeUnit.MINUTES);
+                Game game = games.get(i);
+                assertEquals(Game.Phase.FINISHED, game.getPhase());
+
+                // The plies replay to the same game
+                Game replayed = new Game();
+                for (Game.Ply ply : plies) {
+                    assertTrue(replayed.findValidPlay());
+                    replayed.submit(ply);
+                }
+                assertTrue(!replayed.findValidPlay());
+                assertEquals(GameCodec.toNotation(game), GameCodec.toNotation(replayed));
+            }
+            assertEquals(0, scheduler.getRunning());
+        } finally {
+            scheduling.shutdown();
+            thinking.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelCancelsTheWaitingReply() throws Exception {
+        ExecutorService scheduling = Executors.newSingleThreadExecutor();
+        try {
+            PendingPlayer player = new PendingPlayer();
+            Reply<List<Game.Ply>> result = new GameScheduler(scheduling).play(new Game(), player, player);
+            Reply<?> waiting = player.awaitReply();
+            assertTrue(result.cancel(true));
+            try {
+                result.get();
+                fail();
+            } catch (CancellationException expected) {
+            }
+            try {
+                // The game may only just be setting the reply it waits on
+                waiting.get(1, TimeUnit.MINUTES);
+                fail();
+            } catch (CancellationException expected) {
+            }
+        } finally {
+            scheduling.shutdown();
+        }
+    }
+
+    @Test
+    public void testPlayerFailureFailsTheGame() throws Exception {
+        ExecutorService scheduling = Executors.newSingleThreadExecutor();
+        try {
+            PendingPlayer player = new PendingPlayer();
+            Reply<List<Game.Ply>> result = new GameScheduler(scheduling).play(new Game(), player, player);
+            IllegalStateException failure = new IllegalStateException("Lost connection");
+            player.awaitReply().fail(failure);
+            try {
+                result.get(1, TimeUnit.MINUTES);
+                fail();
+            } catch (ExecutionException expected) {
+                assertSame(failure, expected.getCause());
+            }
+        } finally {
+            scheduling.shutdown();
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package com.nthalk.stacks;
 
+import com.nthalk.stacks.exceptions.InvalidMoveException;
 import com.nthalk.stacks.players.RandomPlayer;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
 public class GameTest {
 
+    /**
+     * Every position holding a white stack of one, but for a red one in the middle.
+     */
+    private static final String FULL = "wwwwwwww/wwwwwwwww/wwwwwrwwww/wwwwwwwww/wwwwwwww w play";
+
     @Test
     public void test() {
         Game game = new Game();
@@ -19,4 +28,54 @@ public class GameTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    private static void assertInvalid(Game game, String from, String to) {
+        Board board = game.getBoard();
+        try {
+            game.validate(new Game.Move(board.getPosition(from), board.getPosition(to)));
+            fail("Expected " + from + "-" + to + " to be invalid");
+        } catch (InvalidMoveException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSurroundedStackCannotMove() {
+        Game game = GameCodec.parseNotation(FULL, Rules.DEFAULT);
+        Board.Position surrounded = game.getBoard().getPosition("F2");
+        assertEquals(6, game.getBoard().adjacentPositions(surrounded).size());
+        assertEquals(0, game.getValidMoves(surrounded).size());
+        assertInvalid(game, "F2", "F3");
+    }
+
+    /**
+     * Stacks on the edge of the board have fewer than six neighbours, so they can always move to each of them.
+     */
+    @Test
+    public void testEdgeStacksAreNeverSurrounded() {
+        Game game = GameCodec.parseNotation(FULL, Rules.DEFAULT);
+        int edges = 0;
+        for (Board.Position position : game.getBoard().getPositions()) {
+            int adjacent = game.getBoard().adjacentPositions(position).size();
+            if (adjacent < 6 && game.getStack(position).get().getOwner() == Game.Color.WHITE) {
+                assertEquals(position.toString(), adjacent, game.getValidMoves(position).size());
+                edges++;
+            }
+        }
+        assertEquals(22, edges);
+    }
+
+    /**
+     * A row up goes a column left, or stays in the same column, never a column right.
+     */
+    @Test
+    public void testDiagonals() throws InvalidMoveException {
+        Game game = GameCodec.parseNotation(FULL, Rules.DEFAULT);
+        Board board = game.getBoard();
+        game.validate(new Game.Move(board.getPosition("C1"), board.getPosition("B2")));
+        game.validate(new Game.Move(board.getPosition("C1"), board.getPosition("C2")));
+        assertInvalid(game, "C1", "D2");
+        game.validate(new Game.Move(board.getPosition("A3"), board.getPosition("B2")));
+        assertInvalid(game, "A3", "B4");
+    }
+}
@@ -0,0 +1,96 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchEvaluatorTest {
+
+    /**
+     * Every position of a few random games, from the empty board to the finished one.
+     */
+    private static List<Game> positions(Rules rules, int games) {
+        Random random = new Random(17);
+        List<Game> positions = new ArrayList<>();
+        for (int i = 0; i < games; i++) {
+            Game game = new Game(rules);
+            positions.add(new Game(game));
+            while (game.findValidPlay()) {
+                List<Game.Ply> plies = game.getValidPlies();
+                game.submit(plies.get(random.nextInt(plies.size())));
+                positions.add(new Game(game));
+            }
+        }
+        return positions;
+    }
+
+    private static <E extends Evaluator & BatchEvaluator> void assertSameScores(E evaluator, Rules rules) {
+        List<Game> positions = positions(rules, 10);
+        PositionBatch batch = new PositionBatch(rules.getBoard(), positions.size());
+        for (Game position : positions) {
+            batch.add(position);
+        }
+        int[] scores = new int[batch.size()];
+        for (Game.Color color : new Game.Color[]{Game.Color.WHITE, Game.Color.BLACK}) {
+            evaluator.evaluate(batch, color, scores);
+            for (int i = 0; i < positions.size(); i++) {
+                assertEquals(evaluator.evaluate(positions.get(i), color), scores[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testLayout() {
+        List<Game> positions = positions(Rules.DEFAULT, 2);
+        PositionBatch batch = new PositionBatch(Rules.DEFAULT.getBoard(), positions.size());
+        for (Game position : positions) {
+            batch.add(position);
+        }
+        Board board = Rules.DEFAULT.getBoard();
+        for (int i = 0; i < positions.size(); i++) {
+            for (int cell = 0; cell < board.getPositions().size(); cell++) {
+                Board.Stack stack = positions.get(i).getStack(board.getPosition(cell)).isEmpty() ? null :
+                    positions.get(i).getStack(board.getPosition(cell)).get();
+                assertEquals(stack == null ? 0 : stack.getSize(), batch.getHeight(i, cell));
+                assertEquals(stack == null ? null : stack.getOwner(), batch.getOwner(i, cell));
+                assertEquals(stack != null && stack.getHasRed(), batch.getHasRed(i, cell));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFull() {
+        PositionBatch batch = new PositionBatch(Rules.DEFAULT.getBoard(), 1);
+        batch.add(new Game());
+        batch.add(new Game());
+    }
+
+    @Test
+    public void testMaterial() {
+        assertSameScores(new MaterialEvaluator(), Rules.DEFAULT);
+    }
+
+    @Test
+    public void testNTupleNetwork() throws InterruptedException {
+        NTupleNetwork network = new NTupleNetwork(Rules.DEFAULT.getBoard());
+        new TDLearner(network, Rules.DEFAULT, 0.1f, 0.1).train(20, 2, 1);
+        assertSameScores(network, Rules.DEFAULT);
+    }
+
+    @Test
+    public void testTwoWordBoard() throws InterruptedException {
+        // 79 positions, so cells use the high words of the masks too
+        Rules rules = new Rules(Board.hexagon(7, 13), 3, Game.Color.WHITE);
+        assertSameScores(new MaterialEvaluator(), rules);
+        NTupleNetwork network = new NTupleNetwork(rules.getBoard());
+        new TDLearner(network, rules, 0.1f, 0.1).train(5, 1, 1);
+        assertSameScores(network, rules);
+    }
+}
@@ -0,0 +1,52 @@
+package com.nthalk.stacks.evaluation;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.players.AlphaBetaPlayer;
+import com.nthalk.stacks.players.RandomPlayer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class NTupleNetworkTest {
+
+    @Test
+    public void testTuplesAreTriangles() {
+        Board board = Rules.DEFAULT.getBoard();
+        NTupleNetwork network = new NTupleNetwork(board);
+        // A row of n positions makes 2n - 1 triangles with the longer row next to it
+        assertEquals((2 * 8 - 1) + (2 * 9 - 1) + (2 * 9 - 1) + (2 * 8 - 1), network.getTupleCount());
+    }
+
+    @Test
+    public void testTrainAndRoundTrip() throws InterruptedException, IOException {
+        NTupleNetwork network = new NTupleNetwork(Rules.DEFAULT.getBoard());
+        new TDLearner(network, Rules.DEFAULT, 0.1f, 0.1).train(20, 4, 1);
+
+        Game game = new Game();
+        game.setPlayer(Game.Color.WHITE, new RandomPlayer());
+        game.setPlayer(Game.Color.BLACK, new RandomPlayer());
+        for (int i = 0; i < 30 && game.findValidPlay(); i++) {
+            game.submit(game.getValidPlies().get(new Random(i).nextInt(game.getValidPlies().size())));
+        }
+        assertNotEquals(0, network.value(game), 0);
+        assertEquals(network.evaluate(game, Game.Color.WHITE), -network.evaluate(game, Game.Color.BLACK));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        network.write(out);
+        NTupleNetwork copy = new NTupleNetwork(Rules.DEFAULT.getBoard());
+        copy.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(network.value(game), copy.value(game), 0);
+
+        game.setPlayer(Game.Color.WHITE, new AlphaBetaPlayer(new AlphaBetaPlayer.Limits().setDepth(2), copy));
+        game.play();
+        assertEquals(Game.Phase.FINISHED, game.getPhase());
+    }
+}
@@ -0,0 +1,212 @@
+package com.nthalk.stacks.journal;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GameJournalTest {
+
+    private static final int GAMES = 32;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Plays random plies, finishing the game in the journal when it ends before the given number of plies.
+     *
+     * @return the number of records journaled
+     */
+    private static int play(GameJournal journal, long id, Game game, int plies, Random random) throws IOException {
+        for (int i = 0; i < plies; i++) {
+            if (!game.findValidPlay()) {
+                journal.finish(id);
+                return i + 1;
+            }
+            List<Game.Ply> valid = game.getValidPlies();
+            game.submit(valid.get(random.nextInt(valid.size())));
+        }
+        return plies;
+    }
+
+    /**
+     * Plays games on several threads, some to the end and some not, and returns the notation of the unfinished ones.
+     */
+    private static Map<Long, String> playConcurrently(final GameJournal journal, final AtomicInteger records) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int g = 0; g < GAMES; g++) {
+                final long id = g;
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        Game game = new Game();
+                        journal.attach(id, game);
+                        records.addAndGet(1 + play(journal, id, game, id % 2 == 0 ? 1000 : (int) id * 3, new Random(id)));
+                        return game.getPhase() == Game.Phase.FINISHED ? null : GameCodec.toNotation(game);
+                    }
+                }));
+            }
+            Map<Long, String> running = new HashMap<>();
+            for (int g = 0; g < GAMES; g++) {
+                String notation = results.get(g).get();
+                if (notation != null) {
+                    running.put((long) g, notation);
+                }
+            }
+            return running;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Map<Long, String> notations(Map<Long, Game> games) {
+        Map<Long, String> notations = new HashMap<>();
+        for (Map.Entry<Long, Game> entry : games.entrySet()) {
+            notations.put(entry.getKey(), GameCodec.toNotation(entry.getValue()));
+        }
+        return notations;
+    }
+
+    private void testRecovery(int compactEvery) throws Exception {
+        File file = new File(folder.newFolder(), "games.journal");
+        AtomicInteger records = new AtomicInteger();
+        Map<Long, String> running;
+        long syncs;
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, compactEvery)) {
+            running = playConcurrently(journal, records);
+            syncs = journal.getSyncs();
+        }
+        assertTrue(running.size() > 0 && running.size() < GAMES);
+        assertTrue("Expected fewer syncs than the " + records + " records but got " + syncs, syncs < records.get());
+
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, compactEvery)) {
+            assertEquals(running, notations(journal.getRecovered()));
+
+            // Recovered games carry on where they were
+            Game game = journal.getRecovered().get(1L);
+            journal.attach(1L, game);
+            play(journal, 1L, game, 5, new Random(1));
+            running.put(1L, GameCodec.toNotation(game));
+        }
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, compactEvery)) {
+            assertEquals(running, notations(journal.getRecovered()));
+        }
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        testRecovery(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testRecoveryWithCompaction() throws Exception {
+        testRecovery(50);
+    }
+
+    /**
+     * Another game appends a ply while the snapshots are being compacted, that ply is then written after them and must
+     * not be in them as well, or it would be replayed twice.
+     */
+    @Test
+    public void testAppendingWhileCompacting() throws Exception {
+        File file = new File(folder.newFolder(), "games.journal");
+        final Game first = new Game();
+        final Game second = new Game();
+        final Thread appending = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    play(null, 1L, second, 1, new Random(1));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, 3) {
+            @Override
+            void compacting() {
+                if (appending.getState() != Thread.State.NEW) {
+                    return;
+                }
+                appending.start();
+                // Until it has appended and waits for this sync to finish
+                while (appending.getState() != Thread.State.WAITING && appending.isAlive()) {
+                    Thread.yield();
+                }
+            }
+        }) {
+            journal.attach(0L, first);
+            journal.attach(1L, second);
+            // The third record compacts
+            play(journal, 0L, first, 1, new Random(0));
+            appending.join();
+        }
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, 3)) {
+            assertEquals(GameCodec.toNotation(first), GameCodec.toNotation(journal.getRecovered().get(0L)));
+            assertEquals(GameCodec.toNotation(second), GameCodec.toNotation(journal.getRecovered().get(1L)));
+        }
+    }
+
+    @Test
+    public void testCompactionBoundsTheFile() throws Exception {
+        File compacted = new File(folder.newFolder(), "compacted.journal");
+        File uncompacted = new File(folder.newFolder(), "uncompacted.journal");
+        for (File file : new File[]{compacted, uncompacted}) {
+            try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, file == compacted ? 100 : Integer.MAX_VALUE)) {
+                for (long id = 0; id < 20; id++) {
+                    Game game = new Game();
+                    journal.attach(id, game);
+                    play(journal, id, game, 1000, new Random(id));
+                }
+            }
+        }
+        assertTrue(compacted.length() < uncompacted.length() / 4);
+        try (GameJournal journal = new GameJournal(compacted, Rules.DEFAULT, 100)) {
+            assertEquals(0, journal.getRecovered().size());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws Exception {
+        File file = new File(folder.newFolder(), "games.journal");
+        String notation;
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, Integer.MAX_VALUE)) {
+            Game game = new Game();
+            journal.attach(7L, game);
+            play(journal, 7L, game, 10, new Random(7));
+            notation = GameCodec.toNotation(game);
+        }
+        long length = file.length();
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            // The start of a move record cut short
+            out.write(new byte[]{0, 0, 0, 11, 3, 0, 0});
+        }
+
+        try (GameJournal journal = new GameJournal(file, Rules.DEFAULT, Integer.MAX_VALUE)) {
+            assertEquals(notation, GameCodec.toNotation(journal.getRecovered().get(7L)));
+            assertEquals(length, file.length());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.nthalk.stacks.metrics;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameScheduler;
+import com.nthalk.stacks.Player;
+import com.nthalk.stacks.players.RandomPlayer;
+import com.nthalk.stacks.players.SynchronousPlayerAdapter;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private static final String[] DRIVERS = {"loop", "scheduler"};
+
+    /**
+     * Plays a game in a JVM of its own, as metrics are only enabled on startup, and reads back how many placements
+     * and moves were played along with the metrics.
+     */
+    private static Map<String, Long> play(String driver) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-Ddvon.metrics=true", "-cp", System.getProperty("java.class.path"),
+            MetricsTest.class.getName(), driver).redirectErrorStream(true).start();
+        Map<String, Long> values = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.split(" ");
+                if (tokens.length == 2 && tokens[1].matches("-?\\d+")) {
+                    values.put(tokens[0], Long.parseLong(tokens[1]));
+                }
+            }
+        }
+        assertEquals(0, process.waitFor());
+        return values;
+    }
+
+    @Test
+    public void testEveryDriverIsInstrumented() throws IOException, InterruptedException {
+        for (String driver : DRIVERS) {
+            Map<String, Long> values = play(driver);
+            for (String timer : new String[]{"submit", "validMoves", "findValidPlay", "connectivitySweep"}) {
+                assertTrue(driver + " " + timer, values.get(timer + ".count") > 0);
+            }
+            assertTrue(driver, values.get("movesGenerated") > 0);
+            // Each ply is timed once, however the game is driven
+            assertEquals(driver, values.get("placements"), values.get("playerPlace.count"));
+            assertEquals(driver, values.get("moves"), values.get("playerMove.count"));
+        }
+    }
+
+    /**
+     * Plays a game of random players, either in a loop asking the current player of the game like the viewer does, or
+     * on a {@link GameScheduler}, then prints the plies played and the metrics.
+     */
+    public static void main(String[] args) throws Exception {
+        if (!Metrics.ENABLED) {
+            throw new IllegalStateException("Expected -Ddvon.metrics=true");
+        }
+        Game game = new Game();
+        int placements = game.getBoard().getPositions().size();
+        int moves = 0;
+        if (args[0].equals("loop")) {
+            game.setPlayer(Game.Color.WHITE, new RandomPlayer());
+            game.setPlayer(Game.Color.BLACK, new RandomPlayer());
+            while (game.findValidPlay()) {
+                Player currentPlayer = game.getCurrentPlayer();
+                if (game.getPhase() == Game.Phase.PLACEMENT) {
+                    game.submit(currentPlayer.place(game.getCurrentColor(), game));
+                } else {
+                    game.submit(currentPlayer.move(game.getCurrentColor(), game));
+                    moves++;
+                }
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                List<Game.Ply> plies = new GameScheduler(executor).play(game, new SynchronousPlayerAdapter(new RandomPlayer(), executor),
+                    new SynchronousPlayerAdapter(new RandomPlayer(), executor)).get();
+                moves = plies.size() - placements;
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        System.out.println("placements " + placements);
+        System.out.println("moves " + moves);
+        for (Map.Entry<String, Long> entry : Metrics.snapshot().entrySet()) {
+            System.out.println(entry.getKey() + " " + entry.getValue());
+        }
+    }
+}
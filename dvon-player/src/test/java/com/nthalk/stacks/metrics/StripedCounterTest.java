@@ -0,0 +1,41 @@
+package com.nthalk.stacks.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StripedCounterTest {
+
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter("test");
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800000, counter.sum());
+    }
+
+    @Test
+    public void testTimer() {
+        Timer timer = new Timer("test");
+        timer.record(5);
+        timer.record(20);
+        timer.record(10);
+        timer.stop(0);
+        assertEquals(3, timer.getCount());
+        assertEquals(35, timer.getTotalNanos());
+        assertEquals(20, timer.getMaxNanos());
+    }
+}
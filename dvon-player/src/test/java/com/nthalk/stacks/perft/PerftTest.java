@@ -0,0 +1,171 @@
+package com.nthalk.stacks.perft;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.exceptions.InvalidMoveException;
+import com.nthalk.stacks.exceptions.InvalidPlacementException;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class PerftTest {
+
+    /**
+     * A random placement of every stack, white to play.
+     */
+    private static final String PLAY = "wbwwrbbb/rwbbbbbbb/bwwrwwwbbw/bwbbbwbww/bwbwwwww w play";
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutdown() {
+        POOL.shutdown();
+    }
+
+    private static long perft(String notation, int depth) {
+        return new Perft(POOL, 1 << 16).run(GameCodec.parseNotation(notation, Rules.DEFAULT), depth).getNodes();
+    }
+
+    /**
+     * Counts like perft without the move generator, trying every pair of positions against {@link Game#validate}.
+     */
+    private static long bruteForce(Game game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        Game position = new Game(game);
+        if (!position.findValidPlay()) {
+            return 0;
+        }
+        long count = 0;
+        for (Game.Ply ply : bruteForcePlies(position)) {
+            Game child = new Game(position);
+            child.submit(ply);
+            count += bruteForce(child, depth - 1);
+        }
+        return count;
+    }
+
+    private static List<Game.Ply> bruteForcePlies(Game game) {
+        List<Game.Ply> plies = new ArrayList<>();
+        for (Board.Position from : game.getBoard().getPositions()) {
+            if (game.getPhase() == Game.Phase.PLACEMENT) {
+                try {
+                    plies.add(new Game.Ply(game.validate(from)));
+                } catch (InvalidPlacementException e) {
+                    // Occupied
+                }
+                continue;
+            }
+            for (Board.Position to : game.getBoard().getPositions()) {
+                try {
+                    plies.add(new Game.Ply(game.validate(new Game.Move(from, to))));
+                } catch (InvalidMoveException e) {
+                    // Not a move
+                }
+            }
+        }
+        return plies;
+    }
+
+    private static Set<String> names(List<Game.Ply> plies) {
+        Set<String> names = new HashSet<>();
+        for (Game.Ply ply : plies) {
+            names.add(ply.toString());
+        }
+        return names;
+    }
+
+    @Test
+    public void testPlacement() {
+        Perft perft = new Perft(POOL, 1 << 16);
+        assertEquals(1, perft.run(new Game(), 0).getNodes());
+        assertEquals(44, perft.run(new Game(), 1).getNodes());
+        assertEquals(44 * 43, perft.run(new Game(), 2).getNodes());
+        assertEquals(44 * 43 * 42, perft.run(new Game(), 3).getNodes());
+        assertEquals(44 * 43 * 42 * 41, perft.run(new Game(), 4).getNodes());
+    }
+
+    @Test
+    public void testPlay() {
+        Game game = GameCodec.parseNotation(PLAY, Rules.DEFAULT);
+        for (int depth = 1; depth <= 3; depth++) {
+            assertEquals(bruteForce(game, depth), perft(PLAY, depth));
+        }
+    }
+
+    /**
+     * A stack of one moves to every stack next to it, including those on the first and last rows.
+     */
+    @Test
+    public void testSingleStacksMoveToTheirNeighbours() {
+        for (String notation : new String[]{
+            "bbbbbbbb/bbb.wbbbb/rbbbbbbbbb/........./........ w play",
+            "......../........./rbbbbbbbbb/bbb.wbbbb/bbbbbbbb w play"}) {
+            Game game = GameCodec.parseNotation(notation, Rules.DEFAULT);
+            game.findValidPlay();
+            Board.Position white = null;
+            for (Board.Position position : game.getBoard().getPositions()) {
+                if (!game.getStack(position).isEmpty() && game.getStack(position).get().getOwner() == Game.Color.WHITE) {
+                    white = position;
+                }
+            }
+            Set<String> expected = new HashSet<>();
+            for (Board.Position adjacent : game.getBoard().adjacentPositions(white)) {
+                if (!game.getStack(adjacent).isEmpty()) {
+                    expected.add(white + "-" + adjacent);
+                }
+            }
+            assertEquals(5, expected.size());
+            assertEquals(expected, names(game.getValidPlies()));
+        }
+    }
+
+    /**
+     * The plies generated are exactly those {@link Game#validate} accepts, throughout random games.
+     */
+    @Test
+    public void testGeneratedPliesAreExactlyTheValidOnes() {
+        Random random = new Random(5);
+        for (int i = 0; i < 20; i++) {
+            Game game = new Game();
+            while (game.findValidPlay()) {
+                List<Game.Ply> plies = game.getValidPlies();
+                assertEquals(names(bruteForcePlies(game)), names(plies));
+                game.submit(plies.get(random.nextInt(plies.size())));
+            }
+        }
+    }
+
+    @Test
+    public void testFinishedGameHasNothingToCount() {
+        assertEquals(0, perft("r......./........./....w.b.../........./........ w play", 2));
+    }
+
+    @Test
+    public void testBreakdownMatchesSequentialCounts() {
+        Game game = GameCodec.parseNotation(PLAY, Rules.DEFAULT);
+        Perft.Result result = new Perft(POOL, 1 << 16).run(game, 3);
+        Perft uncached = new Perft(POOL, 0);
+        long total = 0;
+        for (int i = 0; i < result.getPlies().size(); i++) {
+            Game child = new Game(game);
+            child.findValidPlay();
+            child.submit(result.getPlies().get(i));
+            assertEquals(uncached.count(child, 2), result.getCount(i));
+            total += result.getCount(i);
+        }
+        assertEquals(total, result.getNodes());
+        assertEquals(total, uncached.count(game, 3));
+    }
+}
@@ -0,0 +1,150 @@
+package com.nthalk.stacks.protocol;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Player;
+import com.nthalk.stacks.exceptions.InvalidMoveException;
+import com.nthalk.stacks.exceptions.InvalidPlacementException;
+import com.nthalk.stacks.players.AlphaBetaPlayer;
+import com.nthalk.stacks.players.RandomPlayer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertTrue;
+
+public class EngineProtocolTest {
+
+    private static String run(String input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new EngineProtocol(new AlphaBetaPlayer(), new ByteArrayInputStream(input.getBytes("UTF-8")), new PrintStream(output, true, "UTF-8")).run();
+        return output.toString("UTF-8");
+    }
+
+    @Test
+    public void testHandshake() throws IOException {
+        String output = run("dvon\nisready\nquit\n");
+        assertTrue(output.contains("dvonok\n"));
+        assertTrue(output.contains("readyok\n"));
+    }
+
+    @Test
+    public void testInvalidNumbers() throws IOException {
+        String output = run("go depth x\nsetoption name MultiPV value y\nperft\nperft x\nisready\nquit\n");
+        assertTrue(output, output.contains("info string invalid depth x\n"));
+        assertTrue(output, output.contains("info string invalid MultiPV y\n"));
+        assertTrue(output, output.contains("info string expected a depth\n"));
+        assertTrue(output, output.contains("info string invalid depth x\n"));
+        assertTrue(output, output.contains("readyok\n"));
+    }
+
+    /**
+     * An engine reading commands as they are sent, for commands answered while it is busy.
+     */
+    private static class Session implements Closeable {
+        private final PipedOutputStream input = new PipedOutputStream();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final Thread engine;
+
+        private Session() throws IOException {
+            final PipedInputStream in = new PipedInputStream(input);
+            final PrintStream out = new PrintStream(output, true, "UTF-8");
+            engine = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        new EngineProtocol(new AlphaBetaPlayer(), in, out).run();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            engine.start();
+        }
+
+        private void send(String line) throws IOException {
+            input.write((line + "\n").getBytes("UTF-8"));
+            input.flush();
+        }
+
+        /**
+         * @return everything written so far, once it contains the expected text
+         */
+        private String await(String expected) throws IOException, InterruptedException {
+            long deadline = System.currentTimeMillis() + 60000;
+            String written;
+            while (!(written = output.toString("UTF-8")).contains(expected)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new AssertionError("Expected " + expected + " in " + written);
+                }
+                Thread.sleep(5);
+            }
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            send("quit");
+            try {
+                engine.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            input.close();
+        }
+    }
+
+    @Test
+    public void testPerft() throws IOException, InterruptedException {
+        try (Session session = new Session()) {
+            session.send("position startpos moves F3");
+            session.send("perft 2");
+            String output = session.await("\nnodes ");
+            assertTrue(output, output.startsWith("A3: 42\n"));
+            assertTrue(output, output.contains("\nnodes " + 43 * 42 + " time "));
+        }
+    }
+
+    /**
+     * Counting runs in the background, still answering and stopping when asked.
+     */
+    @Test
+    public void testStopsPerft() throws IOException, InterruptedException {
+        try (Session session = new Session()) {
+            session.send("perft 12");
+            session.send("isready");
+            session.await("readyok\n");
+            session.send("stop");
+            String output = session.await("\nnodes ");
+            assertTrue(output, output.contains("info string perft stopped"));
+        }
+    }
+
+    @Test
+    public void testStopsInfiniteAnalysis() throws IOException, InvalidPlacementException, InvalidMoveException {
+        Game game = new Game();
+        game.setPlayer(Game.Color.WHITE, new RandomPlayer());
+        game.setPlayer(Game.Color.BLACK, new RandomPlayer());
+        StringBuilder moves = new StringBuilder();
+        while (game.findValidPlay() && game.getPhase() == Game.Phase.PLACEMENT) {
+            Player currentPlayer = game.getCurrentPlayer();
+            Game.Ply ply = new Game.Ply(currentPlayer.place(game.getCurrentColor(), game));
+            moves.append(' ').append(ply);
+            game.submit(ply);
+        }
+
+        String output = run("setoption name MultiPV value 2\nposition startpos moves" + moves + "\ngo\nstop\nquit\n");
+        assertTrue(output, output.contains("\nbestmove "));
+
+        assertTrue(output, output.contains("info depth 1 multipv 1 "));
+        assertTrue(output, output.contains("info depth 1 multipv 2 "));
+        String bestMove = output.substring(output.indexOf("bestmove ") + "bestmove ".length()).trim();
+        Game.Ply ply = game.validate(bestMove);
+        assertTrue(!ply.isPlacement());
+    }
+}
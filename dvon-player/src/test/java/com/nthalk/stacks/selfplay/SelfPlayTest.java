@@ -0,0 +1,120 @@
+package com.nthalk.stacks.selfplay;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.store.GameStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SelfPlayTest {
+
+    private static final int GAMES = 300;
+    private static final int BATCH_SIZE = 20;
+    private static final long SEED = 42;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String toString(List<List<Game.Ply>> games) {
+        StringBuilder builder = new StringBuilder();
+        for (List<Game.Ply> plies : games) {
+            builder.append(plies).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static Process startWorker(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), SelfPlayWorker.class.getName(),
+            "localhost", String.valueOf(port)).inheritIO().start();
+    }
+
+    /**
+     * Connects and takes a batch like a worker would, without ever playing it.
+     */
+    private static Socket takeBatch(int port) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        String line = new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine();
+        assertTrue(line, line.startsWith("batch "));
+        return socket;
+    }
+
+    @Test
+    public void testBatchesDependOnlyOnTheirSeed() {
+        assertEquals(toString(SelfPlayWorker.playBatch(7, 5)), toString(SelfPlayWorker.playBatch(7, 5)));
+    }
+
+    @Test
+    public void testWorkersThatDieOrHangAreCoveredByOthers() throws Exception {
+        File directory = folder.newFolder();
+        final SelfPlayCoordinator coordinator = new SelfPlayCoordinator(InetAddress.getLoopbackAddress(), 0, GAMES, BATCH_SIZE, SEED,
+            directory);
+        final Exception[] failure = new Exception[1];
+        Thread run = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    coordinator.run();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        run.start();
+
+        int port = coordinator.getPort();
+        takeBatch(port).close();
+        Socket stuck = takeBatch(port);
+        List<Process> workers = new ArrayList<>();
+        try {
+            workers.add(startWorker(port));
+            workers.add(startWorker(port));
+            run.join(60000);
+            assertTrue("The coordinator did not finish", !run.isAlive());
+            for (Process worker : workers) {
+                assertEquals(0, worker.waitFor());
+            }
+        } finally {
+            stuck.close();
+            for (Process worker : workers) {
+                worker.destroy();
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        try (GameStore store = new GameStore(directory, Rules.DEFAULT)) {
+            assertEquals(GAMES, store.size());
+            int game = 0;
+            for (int batch = 0; batch * BATCH_SIZE < GAMES; batch++) {
+                for (List<Game.Ply> plies : SelfPlayWorker.playBatch(SEED + batch, BATCH_SIZE)) {
+                    Game expected = new Game();
+                    for (Game.Ply ply : plies) {
+                        expected.findValidPlay();
+                        expected.submit(ply);
+                    }
+                    expected.findValidPlay();
+                    int moves = plies.size() - Rules.DEFAULT.getBoard().getPositions().size();
+                    assertEquals(moves, store.getMoveCount(game));
+                    assertEquals(expected.getScore(Game.Color.WHITE), store.getScore(game, Game.Color.WHITE));
+                    assertEquals(expected.getWinner(), store.getWinner(game));
+                    game++;
+                }
+            }
+        }
+    }
+}
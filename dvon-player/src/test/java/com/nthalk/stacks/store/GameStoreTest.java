@@ -0,0 +1,164 @@
+package com.nthalk.stacks.store;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.players.RandomPlayer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GameStoreTest {
+
+    private static final int GAMES = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Game.Ply> play(Game game) {
+        game.setPlayer(Game.Color.WHITE, new RandomPlayer());
+        game.setPlayer(Game.Color.BLACK, new RandomPlayer());
+        return game.play();
+    }
+
+    @Test
+    public void testRoundTripAndScan() throws IOException {
+        File directory = folder.newFolder();
+        Board board = Rules.DEFAULT.getBoard();
+        List<List<Game.Ply>> played = new ArrayList<>();
+        List<Game> finished = new ArrayList<>();
+
+        try (GameStore.Writer writer = new GameStore.Writer(directory, Rules.DEFAULT)) {
+            for (int i = 0; i < GAMES; i++) {
+                Game game = new Game();
+                List<Game.Ply> plies = play(game);
+                writer.append(plies, game);
+                played.add(plies);
+                finished.add(game);
+            }
+        }
+
+        final int firstRed = played.get(0).get(0).getPlacement().getPosition().getIndex();
+        int expectedFirstRed = 0;
+        int expectedWhiteWins = 0;
+        try (GameStore store = new GameStore(directory, Rules.DEFAULT)) {
+            assertEquals(GAMES, store.size());
+            for (int i = 0; i < GAMES; i++) {
+                List<Game.Ply> plies = played.get(i);
+                Game game = finished.get(i);
+                int placements = board.getPositions().size();
+                for (int placement = 0; placement < placements; placement++) {
+                    assertEquals(plies.get(placement).getPlacement().getPosition().getIndex(), store.getPlacementCell(i, placement));
+                }
+                for (int red = 0; red < Rules.DEFAULT.getRedStacks(); red++) {
+                    assertEquals(store.getPlacementCell(i, red), store.getRedCell(i, red));
+                }
+                assertEquals(plies.size() - placements, store.getMoveCount(i));
+                for (int move = 0; move < store.getMoveCount(i); move++) {
+                    Game.ValidMove validMove = plies.get(placements + move).getMove();
+                    assertEquals(validMove.getFrom().getIndex(), store.getMoveFrom(i, move));
+                    assertEquals(validMove.getTo().getIndex(), store.getMoveTo(i, move));
+                }
+                assertEquals(game.getScore(Game.Color.WHITE), store.getScore(i, Game.Color.WHITE));
+                assertEquals(game.getScore(Game.Color.BLACK), store.getScore(i, Game.Color.BLACK));
+                assertEquals(game.getWinner(), store.getWinner(i));
+
+                if (store.getRedCell(i, 0) == firstRed) {
+                    expectedFirstRed++;
+                    if (game.getWinner() == Game.Color.WHITE) {
+                        expectedWhiteWins++;
+                    }
+                }
+            }
+
+            // White's win rate when the first red is placed at a given cell
+            long[] winRate = store.scan(new GameStore.Aggregator<long[]>() {
+                @Override
+                public long[] create() {
+                    return new long[2];
+                }
+
+                @Override
+                public void accumulate(long[] accumulator, GameStore store, long game) {
+                    if (store.getRedCell(game, 0) == firstRed) {
+                        accumulator[0]++;
+                        if (store.getWinner(game) == Game.Color.WHITE) {
+                            accumulator[1]++;
+                        }
+                    }
+                }
+
+                @Override
+                public long[] combine(long[] left, long[] right) {
+                    left[0] += right[0];
+                    left[1] += right[1];
+                    return left;
+                }
+            });
+            assertEquals(expectedFirstRed, winRate[0]);
+            assertEquals(expectedWhiteWins, winRate[1]);
+        }
+    }
+
+    /**
+     * A crash part way through a flush leaves the columns written before the winners one game ahead, the next writer
+     * drops that game rather than appending after it.
+     */
+    @Test
+    public void testReopenAfterTornFlush() throws IOException {
+        File directory = folder.newFolder();
+        List<Game> kept = new ArrayList<>();
+        try (GameStore.Writer writer = new GameStore.Writer(directory, Rules.DEFAULT)) {
+            for (int i = 0; i < 3; i++) {
+                Game game = new Game();
+                writer.append(play(game), game);
+                kept.add(game);
+            }
+        }
+        long[] lengths = {new File(directory, "scores.col").length(), new File(directory, "winners.col").length()};
+        try (GameStore.Writer writer = new GameStore.Writer(directory, Rules.DEFAULT)) {
+            Game game = new Game();
+            writer.append(play(game), game);
+        }
+        try (RandomAccessFile scores = new RandomAccessFile(new File(directory, "scores.col"), "rw");
+             RandomAccessFile winners = new RandomAccessFile(new File(directory, "winners.col"), "rw")) {
+            scores.setLength(lengths[0]);
+            winners.setLength(lengths[1]);
+        }
+
+        List<List<Game.Ply>> appended = new ArrayList<>();
+        try (GameStore.Writer writer = new GameStore.Writer(directory, Rules.DEFAULT)) {
+            for (int i = 0; i < 2; i++) {
+                Game game = new Game();
+                appended.add(play(game));
+                writer.append(appended.get(i), game);
+                kept.add(game);
+            }
+        }
+
+        try (GameStore store = new GameStore(directory, Rules.DEFAULT)) {
+            assertEquals(kept.size(), store.size());
+            for (int i = 0; i < kept.size(); i++) {
+                assertEquals(kept.get(i).getWinner(), store.getWinner(i));
+                assertEquals(kept.get(i).getScore(Game.Color.WHITE), store.getScore(i, Game.Color.WHITE));
+            }
+            int placements = Rules.DEFAULT.getBoard().getPositions().size();
+            for (int i = 0; i < appended.size(); i++) {
+                List<Game.Ply> plies = appended.get(i);
+                assertEquals(plies.get(0).getPlacement().getPosition().getIndex(), store.getPlacementCell(3 + i, 0));
+                assertEquals(plies.size() - placements, store.getMoveCount(3 + i));
+                for (int move = 0; move < store.getMoveCount(3 + i); move++) {
+                    assertEquals(plies.get(placements + move).getMove().getFrom().getIndex(), store.getMoveFrom(3 + i, move));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.nthalk.stacks.viewer;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of every stack on the board at a given ply, safe to hand from the simulation thread to the
+ * render thread.
+ */
+public class BoardSnapshot {
+
+    private final Board board;
+    private final int ply;
+    private final Game.Phase phase;
+    private final Game.Color[] owners;
+    private final int[] stackSizes;
+    private final boolean[] hasReds;
+
+    private BoardSnapshot(Board board, int ply, Game.Phase phase, Game.Color[] owners, int[] stackSizes, boolean[] hasReds) {
+        this.board = board;
+        this.ply = ply;
+        this.phase = phase;
+        this.owners = owners;
+        this.stackSizes = stackSizes;
+        this.hasReds = hasReds;
+    }
+
+    public static BoardSnapshot of(Game game, int ply) {
+        Board board = game.getBoard();
+        int size = board.getPositions().size();
+        Game.Color[] owners = new Game.Color[size];
+        int[] stackSizes = new int[size];
+        boolean[] hasReds = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            for (Board.Stack stack : game.getStack(board.getPosition(i))) {
+                owners[i] = stack.getOwner();
+                stackSizes[i] = stack.getSize();
+                hasReds[i] = stack.getHasRed();
+            }
+        }
+        return new BoardSnapshot(board, ply, game.getPhase(), owners, stackSizes, hasReds);
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public Game.Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return the owner of the stack at the position, or null if the position is empty
+     */
+    public Game.Color getOwner(Board.Position position) {
+        return owners[position.getIndex()];
+    }
+
+    public int getStackSize(Board.Position position) {
+        return stackSizes[position.getIndex()];
+    }
+
+    public boolean getHasRed(Board.Position position) {
+        return hasReds[position.getIndex()];
+    }
+
+    /**
+     * @param previous the snapshot last applied, or null if nothing has been applied yet
+     * @return the positions whose stack differs from the previous snapshot, in index order
+     */
+    public List<Board.Position> changedPositions(BoardSnapshot previous) {
+        List<Board.Position> changed = new ArrayList<>();
+        for (int i = 0; i < owners.length; i++) {
+            if (previous == null ||
+                previous.owners[i] != owners[i] ||
+                previous.stackSizes[i] != stackSizes[i] ||
+                previous.hasReds[i] != hasReds[i]) {
+                changed.add(board.getPosition(i));
+            }
+        }
+        return changed;
+    }
+}
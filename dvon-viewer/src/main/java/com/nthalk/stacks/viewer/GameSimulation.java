@@ -0,0 +1,86 @@
+package com.nthalk.stacks.viewer;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.Player;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays a game on its own thread, publishing a {@link BoardSnapshot} after every ply. The game is only ever touched
+ * by the simulation thread; readers only see snapshots.
+ */
+public class GameSimulation implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(GameSimulation.class);
+
+    private final Game game;
+    private final long plyDelayMillis;
+    private final AtomicReference<BoardSnapshot> latest;
+    private volatile boolean running = true;
+    private Thread thread;
+    private int ply = 0;
+
+    /**
+     * @param plyDelayMillis how long to wait between plies, 0 plays as fast as the players can
+     */
+    public GameSimulation(Game game, long plyDelayMillis) {
+        this.game = game;
+        this.plyDelayMillis = plyDelayMillis;
+        this.latest = new AtomicReference<>(BoardSnapshot.of(game, ply));
+    }
+
+    public BoardSnapshot getLatest() {
+        return latest.get();
+    }
+
+    /**
+     * Plays a single ply and publishes the resulting snapshot.
+     *
+     * @return false once the game is finished
+     */
+    public boolean step() {
+        if (!game.findValidPlay()) {
+            if (latest.get().getPhase() != Game.Phase.FINISHED) {
+                LOG.info("Game finished: WHITE: " + game.getScore(Game.Color.WHITE) + ", BLACK: " + game.getScore(Game.Color.BLACK) + " WINNER: " + game.getWinner());
+            }
+            latest.set(BoardSnapshot.of(game, ply));
+            return false;
+        }
+        Player currentPlayer = game.getCurrentPlayer();
+        if (game.getPhase() == Game.Phase.PLACEMENT) {
+            game.submit(currentPlayer.place(game.getCurrentColor(), game));
+        } else {
+            game.submit(currentPlayer.move(game.getCurrentColor(), game));
+        }
+        ply++;
+        latest.set(BoardSnapshot.of(game, ply));
+        return true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running && step()) {
+                if (plyDelayMillis > 0) {
+                    Thread.sleep(plyDelayMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.info("Simulation interrupted at ply " + ply);
+        }
+    }
+
+    public void start() {
+        thread = new Thread(this, "dvon-simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
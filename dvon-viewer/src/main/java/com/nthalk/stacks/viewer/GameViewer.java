@@ -5,8 +5,10 @@ import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.font.BitmapFont;
 import com.jme3.font.BitmapText;
+import com.jme3.input.KeyInput;
 import com.jme3.input.MouseInput;
 import com.jme3.input.controls.ActionListener;
+import com.jme3.input.controls.KeyTrigger;
 import com.jme3.input.controls.MouseButtonTrigger;
 import com.jme3.light.AmbientLight;
 import com.jme3.material.Material;
@@ -20,13 +22,15 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.shape.Quad;
 import com.jme3.system.AppSettings;
-import com.nthalk.fn.Option;
 import com.nthalk.stacks.Board;
 import com.nthalk.stacks.Game;
-import com.nthalk.stacks.Player;
+import com.nthalk.stacks.Rules;
 import com.nthalk.stacks.players.RandomPlayer;
+import com.nthalk.stacks.store.GameStore;
 import org.apache.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.IdentityHashMap;
 import java.util.Map;
 
@@ -36,19 +40,53 @@ public class GameViewer extends SimpleApplication {
 
     private static Game game = new Game();
     private final Map<Board.Position, PositionNode> positions = new IdentityHashMap<>();
+    private final long plyDelayMillis;
+    private final ReplayTimeline timeline;
+    private GameSimulation simulation;
+    private BoardSnapshot replaySnapshot;
+    private BoardSnapshot appliedSnapshot;
     private Material redMaterial;
     private Material greyMaterial;
     private Material blackMaterial;
     private Material whiteMaterial;
 
 
+    /**
+     * Watches a live game between random players.
+     */
+    public GameViewer(long plyDelayMillis) {
+        this.plyDelayMillis = plyDelayMillis;
+        this.timeline = null;
+    }
+
+    /**
+     * Replays a recorded game, stepped through with the arrow keys, page up and down jumping a keyframe interval and
+     * home and end jumping to either end.
+     */
+    public GameViewer(ReplayTimeline timeline) {
+        this.plyDelayMillis = 0;
+        this.timeline = timeline;
+    }
+
     public static Game getGame() {
         return game;
     }
 
 
-    public static void main(String[] args) {
-        GameViewer gameViewer = new GameViewer();
+    /**
+     * Arguments are the delay between plies of a live game in milliseconds, or "replay", the directory of a
+     * {@link GameStore}, the index of the game and optionally the keyframe interval.
+     */
+    public static void main(String[] args) throws IOException {
+        GameViewer gameViewer;
+        if (args.length > 0 && args[0].equals("replay")) {
+            int keyframeInterval = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+            try (GameStore store = new GameStore(new File(args[1]), Rules.DEFAULT)) {
+                gameViewer = new GameViewer(ReplayTimeline.of(store, Long.parseLong(args[2]), Rules.DEFAULT, keyframeInterval));
+            }
+        } else {
+            gameViewer = new GameViewer(args.length > 0 ? Long.parseLong(args[0]) : 250);
+        }
         gameViewer.setShowSettings(false);
         gameViewer.setDisplayStatView(false);
         AppSettings appSettings = new AppSettings(true);
@@ -60,43 +98,30 @@ public class GameViewer extends SimpleApplication {
 
     @Override
     public void simpleUpdate(float tpf) {
-        if (game.findValidPlay()) {
-            Player currentPlayer = game.getCurrentPlayer();
-            if (game.getPhase() == Game.Phase.PLACEMENT) {
-                Game.ValidPosition place = currentPlayer.place(game.getCurrentColor(), game);
-                game.submit(place);
-            } else {
-                Game.ValidMove move = currentPlayer.move(game.getCurrentColor(), game);
-                game.submit(move);
-            }
+        BoardSnapshot snapshot = timeline == null ? simulation.getLatest() : replaySnapshot;
+        if (snapshot == appliedSnapshot) {
+            return;
         }
-        for (Board.Position position : game.getBoard().getPositions()) {
-            updatePosition(position);
+        for (Board.Position position : snapshot.changedPositions(appliedSnapshot)) {
+            updatePosition(position, snapshot);
         }
+        appliedSnapshot = snapshot;
     }
 
-    private void updatePosition(Board.Position position) {
+    private void updatePosition(Board.Position position, BoardSnapshot snapshot) {
         PositionNode to = positions.get(position);
-        Option<Board.Stack> stackOption = game.getStack(position);
-        if (stackOption.isEmpty()) {
+        Game.Color owner = snapshot.getOwner(position);
+        if (owner == null) {
             to.setPositionMaterial(greyMaterial);
-            to.setHasRed(false);
-            to.setStackSize(0);
-        } else {
-            for (Board.Stack stack : stackOption) {
-                Game.Color owner = stack.getOwner();
-                if (owner == Game.Color.WHITE) {
-                    to.setPositionMaterial(whiteMaterial);
-                } else if (owner == Game.Color.BLACK) {
-                    to.setPositionMaterial(blackMaterial);
-                } else if (owner == Game.Color.RED) {
-                    to.setPositionMaterial(redMaterial);
-                }
-                to.setHasRed(stack.getHasRed());
-                to.setStackSize(stack.getSize());
-            }
+        } else if (owner == Game.Color.WHITE) {
+            to.setPositionMaterial(whiteMaterial);
+        } else if (owner == Game.Color.BLACK) {
+            to.setPositionMaterial(blackMaterial);
+        } else if (owner == Game.Color.RED) {
+            to.setPositionMaterial(redMaterial);
         }
-
+        to.setHasRed(snapshot.getHasRed(position));
+        to.setStackSize(snapshot.getStackSize(position));
     }
 
     @Override
@@ -105,6 +130,24 @@ public class GameViewer extends SimpleApplication {
         configureEvents();
         setupMaterials();
         buildTheBoard();
+        if (timeline == null) {
+            simulation = new GameSimulation(game, plyDelayMillis);
+            simulation.start();
+        } else {
+            replaySnapshot = timeline.seek(0);
+        }
+    }
+
+    private void seek(int ply) {
+        replaySnapshot = timeline.seek(Math.max(0, Math.min(timeline.size(), ply)));
+    }
+
+    @Override
+    public void destroy() {
+        if (simulation != null) {
+            simulation.stop();
+        }
+        super.destroy();
     }
 
     private void configureEvents() {
@@ -133,6 +176,44 @@ public class GameViewer extends SimpleApplication {
                 }
             }
         }, "MouseButton");
+
+        if (timeline != null) {
+            inputManager.addMapping("Back", new KeyTrigger(KeyInput.KEY_LEFT));
+            inputManager.addMapping("Forward", new KeyTrigger(KeyInput.KEY_RIGHT));
+            inputManager.addMapping("BackKeyframe", new KeyTrigger(KeyInput.KEY_PGUP));
+            inputManager.addMapping("ForwardKeyframe", new KeyTrigger(KeyInput.KEY_PGDN));
+            inputManager.addMapping("Start", new KeyTrigger(KeyInput.KEY_HOME));
+            inputManager.addMapping("End", new KeyTrigger(KeyInput.KEY_END));
+            inputManager.addListener(new ActionListener() {
+                @Override
+                public void onAction(String name, boolean pressed, float tpf) {
+                    if (!pressed) {
+                        return;
+                    }
+                    int ply = replaySnapshot.getPly();
+                    switch (name) {
+                        case "Back":
+                            seek(ply - 1);
+                            break;
+                        case "Forward":
+                            seek(ply + 1);
+                            break;
+                        case "BackKeyframe":
+                            seek(ply - timeline.getKeyframeInterval());
+                            break;
+                        case "ForwardKeyframe":
+                            seek(ply + timeline.getKeyframeInterval());
+                            break;
+                        case "Start":
+                            seek(0);
+                            break;
+                        case "End":
+                            seek(timeline.size());
+                            break;
+                    }
+                }
+            }, "Back", "Forward", "BackKeyframe", "ForwardKeyframe", "Start", "End");
+        }
     }
 
     private void buildTheBoard() {
@@ -64,7 +64,9 @@ public class PositionNode {
     }
 
     public void setPositionMaterial(Material material) {
-        positionShape.setMaterial(material);
+        if (positionShape.getMaterial() != material) {
+            positionShape.setMaterial(material);
+        }
     }
 
     public void setHasRed(boolean hasRed) {
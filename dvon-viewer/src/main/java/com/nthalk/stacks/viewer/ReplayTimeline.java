@@ -0,0 +1,136 @@
+package com.nthalk.stacks.viewer;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.exceptions.InvalidMoveException;
+import com.nthalk.stacks.exceptions.InvalidPlacementException;
+import com.nthalk.stacks.store.GameStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded game that can be looked at as of any ply. A {@link GameCodec} snapshot is kept every so many plies, so
+ * seeking restores the snapshot at or before the ply and replays at most the plies in between.
+ */
+public class ReplayTimeline {
+
+    private final Rules rules;
+    private final List<Game.Ply> plies;
+    private final int keyframeInterval;
+    private final ByteBuffer[] keyframes;
+
+    /**
+     * @param plies            every ply of the game, in order, each checked against the game as it is replayed
+     * @param keyframeInterval how many plies apart snapshots are kept
+     * @throws IllegalArgumentException if a ply is not valid where it is played
+     */
+    public ReplayTimeline(Rules rules, List<Game.Ply> plies, int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Expected a keyframe interval of at least 1 but got " + keyframeInterval);
+        }
+        this.rules = rules;
+        this.plies = Collections.unmodifiableList(new ArrayList<>(plies));
+        this.keyframeInterval = keyframeInterval;
+        keyframes = new ByteBuffer[plies.size() / keyframeInterval + 1];
+
+        Game game = new Game(rules);
+        for (int ply = 0; ply <= plies.size(); ply++) {
+            boolean validPlay = game.findValidPlay();
+            if (ply % keyframeInterval == 0) {
+                ByteBuffer keyframe = ByteBuffer.allocate(GameCodec.binarySize(rules));
+                GameCodec.write(game, keyframe);
+                keyframe.flip();
+                keyframes[ply / keyframeInterval] = keyframe;
+            }
+            if (ply < plies.size()) {
+                if (!validPlay) {
+                    throw new IllegalArgumentException("The game finished after " + ply + " of " + plies.size() + " plies");
+                }
+                game.submit(validate(game, plies.get(ply), ply));
+            }
+        }
+    }
+
+    /**
+     * Plies are only trusted once the game has accepted them, they may come from a store written under other rules or
+     * a corrupt one.
+     */
+    private static Game.Ply validate(Game game, Game.Ply ply, int index) {
+        try {
+            if (ply.isPlacement()) {
+                return new Game.Ply(game.validate(ply.getPlacement().getPosition()));
+            }
+            return new Game.Ply(game.validate(ply.getMove()));
+        } catch (InvalidPlacementException | InvalidMoveException e) {
+            throw new IllegalArgumentException("Ply " + index + ", " + ply + ", is not valid: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the plies of a stored game.
+     *
+     * @throws IllegalArgumentException if the stored game is not a valid game under the rules
+     */
+    public static ReplayTimeline of(GameStore store, long game, Rules rules, int keyframeInterval) {
+        Board board = rules.getBoard();
+        int placements = board.getPositions().size();
+        List<Game.Ply> plies = new ArrayList<>();
+        for (int placement = 0; placement < placements; placement++) {
+            Board.Position position = position(board, store.getPlacementCell(game, placement), placement);
+            plies.add(new Game.Ply(new Game.ValidPosition(position)));
+        }
+        for (int move = 0; move < store.getMoveCount(game); move++) {
+            Board.Position from = position(board, store.getMoveFrom(game, move), placements + move);
+            Board.Position to = position(board, store.getMoveTo(game, move), placements + move);
+            plies.add(new Game.Ply(new Game.ValidMove(new Game.Move(from, to))));
+        }
+        return new ReplayTimeline(rules, plies, keyframeInterval);
+    }
+
+    private static Board.Position position(Board board, int cell, int ply) {
+        if (cell >= board.getPositions().size()) {
+            throw new IllegalArgumentException("Ply " + ply + " is at cell " + cell + ", which is not on the board");
+        }
+        return board.getPosition(cell);
+    }
+
+    /**
+     * @return how many plies the game has, the last ply to seek to
+     */
+    public int size() {
+        return plies.size();
+    }
+
+    public List<Game.Ply> getPlies() {
+        return plies;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * @return the game once the given number of plies have been played
+     */
+    public Game gameAt(int ply) {
+        if (ply < 0 || ply > plies.size()) {
+            throw new IndexOutOfBoundsException("Ply " + ply + " is not within 0 and " + plies.size());
+        }
+        int keyframe = ply / keyframeInterval;
+        Game game = GameCodec.read(keyframes[keyframe].duplicate(), rules);
+        for (int i = keyframe * keyframeInterval; i < ply; i++) {
+            game.submit(plies.get(i));
+            game.findValidPlay();
+        }
+        return game;
+    }
+
+    public BoardSnapshot seek(int ply) {
+        return BoardSnapshot.of(gameAt(ply), ply);
+    }
+}
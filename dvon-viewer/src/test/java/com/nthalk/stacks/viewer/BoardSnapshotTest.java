@@ -0,0 +1,66 @@
+package com.nthalk.stacks.viewer;
+
+import com.nthalk.stacks.Board;
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.players.RandomPlayer;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoardSnapshotTest {
+
+    private static Game newGame() {
+        Game game = new Game();
+        game.setPlayer(Game.Color.WHITE, new RandomPlayer());
+        game.setPlayer(Game.Color.BLACK, new RandomPlayer());
+        return game;
+    }
+
+    @Test
+    public void testFirstSnapshotChangesEverything() {
+        Game game = newGame();
+        BoardSnapshot snapshot = BoardSnapshot.of(game, 0);
+        assertEquals(game.getBoard().getPositions().size(), snapshot.changedPositions(null).size());
+        assertTrue(snapshot.changedPositions(BoardSnapshot.of(game, 0)).isEmpty());
+    }
+
+    @Test
+    public void testPlacementChangesOnePosition() {
+        Game game = newGame();
+        GameSimulation simulation = new GameSimulation(game, 0);
+        BoardSnapshot before = simulation.getLatest();
+        assertTrue(simulation.step());
+        BoardSnapshot after = simulation.getLatest();
+
+        List<Board.Position> changed = after.changedPositions(before);
+        assertEquals(1, changed.size());
+        Board.Position placed = changed.get(0);
+        assertNull(before.getOwner(placed));
+        assertEquals(Game.Color.RED, after.getOwner(placed));
+        assertEquals(1, after.getStackSize(placed));
+        assertTrue(after.getHasRed(placed));
+        assertEquals(1, after.getPly());
+    }
+
+    @Test
+    public void testSnapshotsAreImmutable() {
+        Game game = newGame();
+        GameSimulation simulation = new GameSimulation(game, 0);
+        BoardSnapshot empty = simulation.getLatest();
+        simulation.run();
+
+        BoardSnapshot finished = simulation.getLatest();
+        assertEquals(Game.Phase.FINISHED, finished.getPhase());
+        assertFalse(simulation.step());
+        for (Board.Position position : game.getBoard().getPositions()) {
+            assertNull(empty.getOwner(position));
+            assertEquals(0, empty.getStackSize(position));
+            assertEquals(game.getStack(position).isEmpty(), finished.getOwner(position) == null);
+        }
+    }
+}
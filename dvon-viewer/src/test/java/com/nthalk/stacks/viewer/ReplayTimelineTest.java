@@ -0,0 +1,154 @@
+package com.nthalk.stacks.viewer;
+
+import com.nthalk.stacks.Game;
+import com.nthalk.stacks.GameCodec;
+import com.nthalk.stacks.Rules;
+import com.nthalk.stacks.players.RandomPlayer;
+import com.nthalk.stacks.store.GameStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplayTimelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Game newGame(long seed) {
+        Game game = new Game();
+        RandomPlayer player = new RandomPlayer(new Random(seed));
+        game.setPlayer(Game.Color.WHITE, player);
+        game.setPlayer(Game.Color.BLACK, player);
+        return game;
+    }
+
+    /**
+     * Replays the game from the first ply, the way seeking did before keyframes.
+     */
+    private static Game replay(List<Game.Ply> plies, int ply) {
+        Game game = new Game();
+        for (int i = 0; i < ply; i++) {
+            game.findValidPlay();
+            game.submit(plies.get(i));
+        }
+        game.findValidPlay();
+        return game;
+    }
+
+    @Test
+    public void testSeekMatchesAFullReplay() {
+        List<Game.Ply> plies = newGame(3).play();
+        for (int keyframeInterval : new int[]{1, 7, 16, 1000}) {
+            ReplayTimeline timeline = new ReplayTimeline(Rules.DEFAULT, plies, keyframeInterval);
+            assertEquals(plies.size(), timeline.size());
+            // Backwards, as a scrub would
+            for (int ply = plies.size(); ply >= 0; ply--) {
+                BoardSnapshot snapshot = timeline.seek(ply);
+                Game expected = replay(plies, ply);
+                assertEquals(ply, snapshot.getPly());
+                assertEquals(expected.getPhase(), snapshot.getPhase());
+                assertTrue(snapshot.changedPositions(BoardSnapshot.of(expected, ply)).isEmpty());
+                assertEquals(GameCodec.toNotation(expected), GameCodec.toNotation(timeline.gameAt(ply)));
+            }
+        }
+    }
+
+    @Test
+    public void testEndIsFinished() {
+        Game game = newGame(5);
+        List<Game.Ply> plies = game.play();
+        ReplayTimeline timeline = new ReplayTimeline(Rules.DEFAULT, plies, 16);
+        assertEquals(Game.Phase.FINISHED, timeline.seek(timeline.size()).getPhase());
+        assertEquals(GameCodec.toNotation(game), GameCodec.toNotation(timeline.gameAt(timeline.size())));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSeekPastTheEnd() {
+        List<Game.Ply> plies = newGame(5).play();
+        new ReplayTimeline(Rules.DEFAULT, plies, 16).seek(plies.size() + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPliesAfterTheEnd() {
+        List<Game.Ply> plies = newGame(5).play();
+        plies.add(plies.get(plies.size() - 1));
+        new ReplayTimeline(Rules.DEFAULT, plies, 16);
+    }
+
+    @Test
+    public void testStoredGame() throws Exception {
+        File directory = folder.newFolder();
+        Game first = newGame(8);
+        Game game = newGame(9);
+        try (GameStore.Writer writer = new GameStore.Writer(directory, Rules.DEFAULT)) {
+            writer.append(first.play(), first);
+            writer.append(game.play(), game);
+        }
+        try (GameStore store = new GameStore(directory, Rules.DEFAULT)) {
+            ReplayTimeline timeline = ReplayTimeline.of(store, 1, Rules.DEFAULT, 16);
+            assertEquals(GameCodec.toNotation(game), GameCodec.toNotation(timeline.gameAt(timeline.size())));
+        }
+    }
+
+    @Test
+    public void testInvalidPly() {
+        List<Game.Ply> plies = newGame(5).play();
+        // A move from where the first stack was placed, to wherever the second was, is not a valid first move
+        Game.Move move = new Game.Move(plies.get(0).getPlacement().getPosition(), plies.get(1).getPlacement().getPosition());
+        int first = Rules.DEFAULT.getBoard().getPositions().size();
+        plies.set(first, new Game.Ply(new Game.ValidMove(move)));
+        try {
+            new ReplayTimeline(Rules.DEFAULT, plies, 16);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Ply " + first + ", "));
+        }
+    }
+
+    @Test
+    public void testCorruptStore() throws Exception {
+        File directory = folder.newFolder();
+        Game game = newGame(9);
+        try (GameStore.Writer writer = new GameStore.Writer(directory, Rules.DEFAULT)) {
+            writer.append(game.play(), game);
+        }
+        try (RandomAccessFile moves = new RandomAccessFile(new File(directory, "moves.col"), "rw")) {
+            // The destination of the third move
+            moves.seek(2 * 2 + 1);
+            moves.write(0xff);
+        }
+        try (GameStore store = new GameStore(directory, Rules.DEFAULT)) {
+            ReplayTimeline.of(store, 0, Rules.DEFAULT, 16);
+            fail();
+        } catch (IllegalArgumentException e) {
+            int third = Rules.DEFAULT.getBoard().getPositions().size() + 2;
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Ply " + third + " "));
+        }
+    }
+
+    @Test
+    public void testSeekIsFast() {
+        List<Game.Ply> plies = newGame(11).play();
+        ReplayTimeline timeline = new ReplayTimeline(Rules.DEFAULT, plies, 16);
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            timeline.seek(random.nextInt(plies.size() + 1));
+        }
+        int seeks = 2000;
+        long start = System.nanoTime();
+        for (int i = 0; i < seeks; i++) {
+            timeline.seek(random.nextInt(plies.size() + 1));
+        }
+        long nanosPerSeek = (System.nanoTime() - start) / seeks;
+        assertTrue("Seeking took " + nanosPerSeek + "ns", nanosPerSeek < 1000000);
+    }
+}